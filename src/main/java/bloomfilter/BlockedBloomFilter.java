@@ -0,0 +1,188 @@
+package bloomfilter;
+
+/**
+ * 按缓存行分块的布隆过滤器。位数组分成若干 512 位（64 字节，一条缓存行）的块，
+ * 一个值的 k 个位全部落在同一个块内：128 位散列的低 64 位选块，高 64 位每 9 位给出一个块内位置，
+ * 超过 7 个位置时由这 64 位继续混合生成。各位置相互独立，不像双重散列那样只由少数几位决定，
+ * 块内不会出现大量重复的位模式。查询只访问一个块，最多一次缓存未命中，而 BloomFilter 最多 k 次。
+ * 代价是各块的负载不均匀，相同位数下误判率比 BloomFilter 高，按目标误判率确定大小时会多用一些位。
+ * Java 不保证数组按 64 字节对齐，一个块可能跨两条相邻的缓存行，相邻行通常被硬件预取一起取回。
+ * 与 BloomFilter 一样，添加不是线程安全的；查询不修改任何状态，建好的过滤器可以被多个线程同时查询。
+ */
+public class BlockedBloomFilter {
+
+    private static final int BLOCK_BITS = 512;    //每块的位数
+    private static final int BLOCK_WORDS = BLOCK_BITS / 64;
+    private static final int PROBES_PER_WORD = 7;  //64 位散列能提供的 9 位块内位置个数
+
+    private final long[] bits;                    //二进制向量，每 8 个 long 为一块
+    private final long blockNum;                  //块数
+    private final int numHashes;                  //每个值映射的位数
+    private final BloomHash hash;                 //散列函数
+
+    /**
+     * 按预计插入个数和目标误判率确定块数和映射的位数
+     */
+    public BlockedBloomFilter(long expectedInsertions, double fpp) {
+        this(expectedInsertions, fpp, new Murmur3Hash());
+    }
+
+    public BlockedBloomFilter(long expectedInsertions, double fpp, BloomHash hash) {
+        this(optimalNumOfBlocks(expectedInsertions, fpp), expectedInsertions, hash);
+    }
+
+    private BlockedBloomFilter(long blockNum, long expectedInsertions, BloomHash hash) {
+        this(blockNum * BLOCK_BITS,
+                Math.min(BLOCK_BITS / 8, BloomFilter.optimalNumOfHashes(expectedInsertions, blockNum * BLOCK_BITS)), hash);
+    }
+
+    /**
+     * 指定位数（向上取整为 512 的倍数）和映射的位数，用于和相同大小的 BloomFilter 对比
+     */
+    public BlockedBloomFilter(long bitSize, int numHashes, BloomHash hash) {
+        if (hash == null) {
+            throw new IllegalArgumentException("hash must not be null");
+        }
+        if (numHashes <= 0 || numHashes > BLOCK_BITS) {
+            throw new IllegalArgumentException("numHashes must be in [1, " + BLOCK_BITS + "]");
+        }
+        if (bitSize <= 0 || bitSize > BloomFilter.MAX_BIT_SIZE) {
+            throw new IllegalArgumentException("bitSize out of range: " + bitSize);
+        }
+        this.blockNum = (bitSize + BLOCK_BITS - 1) / BLOCK_BITS;
+        this.bits = new long[(int) (blockNum * BLOCK_WORDS)];
+        this.numHashes = numHashes;
+        this.hash = hash;
+    }
+
+    /**
+     * 满足目标误判率的最少块数：从 BloomFilter 的最优位数开始，每次增加 5%，直到预计误判率不超过 fpp
+     */
+    static long optimalNumOfBlocks(long n, double fpp) {
+        long blocks = (BloomFilter.optimalNumOfBits(n, fpp) + BLOCK_BITS - 1) / BLOCK_BITS;
+        long maxBlocks = BloomFilter.MAX_BIT_SIZE / BLOCK_BITS;
+        while (true) {
+            int k = Math.min(BLOCK_BITS / 8, BloomFilter.optimalNumOfHashes(n, blocks * BLOCK_BITS));
+            if (expectedFpp(n, blocks, k) <= fpp) {
+                return blocks;
+            }
+            if (blocks >= maxBlocks) {
+                throw new IllegalArgumentException("too many bits required for fpp " + fpp);
+            }
+            blocks = Math.min(maxBlocks, blocks + Math.max(1, blocks / 20));
+        }
+    }
+
+    /**
+     * 插入 n 个值后的预计误判率。每块的值个数近似服从均值 λ = n/块数 的泊松分布，
+     * 块内有 x 个值时误判率为 (1 - (1 - 1/512)^(kx))^k，按分布加权求和。
+     */
+    static double expectedFpp(long n, long blocks, int k) {
+        double lambda = (double) n / blocks;
+        int from = (int) Math.max(0, Math.floor(lambda - 12 * Math.sqrt(lambda) - 12));
+        int to = (int) Math.ceil(lambda + 12 * Math.sqrt(lambda) + 12);
+        double miss = Math.log1p(-1.0 / BLOCK_BITS);
+        double total = 0;
+        for (int x = from; x <= to; x++) {
+            // 泊松概率在对数域计算，避免 λ 较大时溢出
+            double logP = -lambda + x * Math.log(lambda) - logFactorial(x);
+            double inner = Math.pow(-Math.expm1(k * x * miss), k);
+            total += Math.exp(logP) * inner;
+        }
+        return total;
+    }
+
+    private static double logFactorial(int x) {
+        double sum = 0;
+        for (int i = 2; i <= x; i++) {
+            sum += Math.log(i);
+        }
+        return sum;
+    }
+
+    /**
+     * 向过滤器中添加字符串
+     */
+    public void addValue(String value) {
+        if (value == null) {
+            return;
+        }
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        int base = block(hashes[0]) * BLOCK_WORDS;
+        long seed = hashes[1];
+        long pattern = seed;
+        for (int i = 0; i < numHashes; i++) {
+            if (i % PROBES_PER_WORD == 0 && i > 0) {
+                seed = mix(seed);
+                pattern = seed;
+            }
+            int bit = (int) pattern & (BLOCK_BITS - 1);
+            pattern >>>= 9;
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * 判断字符串是否包含在布隆过滤器中，只访问一个块
+     */
+    public boolean contains(String value) {
+        if (value == null) {
+            return false;
+        }
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        int base = block(hashes[0]) * BLOCK_WORDS;
+        long seed = hashes[1];
+        long pattern = seed;
+        for (int i = 0; i < numHashes; i++) {
+            if (i % PROBES_PER_WORD == 0 && i > 0) {
+                seed = mix(seed);
+                pattern = seed;
+            }
+            int bit = (int) pattern & (BLOCK_BITS - 1);
+            pattern >>>= 9;
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 由低 64 位散列的高 32 位选块：(h * 块数) >>> 32 把 [0, 2^32) 均匀映射到 [0, 块数)，用一次乘法代替取模
+     */
+    private int block(long h) {
+        return (int) (((h >>> 32) * blockNum) >>> 32);
+    }
+
+    /**
+     * SplitMix64 的混合函数，k 超过 7 时由已用完的 64 位生成下一组块内位置
+     */
+    private static long mix(long z) {
+        z = (z + 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 二进制向量的位数
+     */
+    public long getBitSize() {
+        return blockNum * BLOCK_BITS;
+    }
+
+    /**
+     * 每个值映射的位数
+     */
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * 位数组占用的字节数
+     */
+    public long getMemoryBytes() {
+        return 8L * bits.length;
+    }
+}
@@ -0,0 +1,127 @@
+package bloomfilter;
+
+/**
+ * 比较 BloomFilter 与按缓存行分块的 BlockedBloomFilter 的查询耗时和误判率。
+ * 插入 n 个随机字符串后，分别查询 q 个已插入和 q 个未插入的字符串，查询的字符串预先生成，计时只包含 contains。
+ * 过滤器远大于 CPU 缓存时，BloomFilter 查询已插入的值要访问 k 个随机的缓存行，BlockedBloomFilter 只访问一个。
+ * 另外单独测量只计算散列的耗时作为基线。分块过滤器分别按相同的目标误判率和与 BloomFilter 相同的位数创建，后者用于观察相同内存下误判率的差距。
+ * 用法：BlockedBloomFilterBenchmark [插入个数，默认 2000 万] [查询个数，默认 200 万] [目标误判率，默认 0.001]
+ */
+public class BlockedBloomFilterBenchmark {
+
+    private interface Filter {
+        void add(String value);
+
+        boolean contains(String value);
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+        int q = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        double fpp = args.length > 2 ? Double.parseDouble(args[2]) : 0.001;
+
+        String[] present = new String[q];
+        String[] absent = new String[q];
+        for (int i = 0; i < q; i++) {
+            // 已插入的值在 [0, n) 中均匀分布，避免只查询最先插入的值
+            present[i] = BloomFilterFpp.randomWord((long) i * n / q);
+            absent[i] = BloomFilterFpp.randomWord(-1 - i);
+        }
+
+        System.out.println("插入 n=" + n + " 查询 q=" + q + " 目标误判率 " + fpp);
+        System.out.printf("%-22s %10s %4s %12s %12s %12s%n",
+                "布局", "内存(MB)", "k", "误判率", "命中 ns/次", "未命中 ns/次");
+
+        hashOnly(present, absent);
+
+        BloomFilter classic = new BloomFilter(n, fpp);
+        run("BloomFilter", classic.getMemoryBytes(), classic.getNumHashes(),
+                wrap(classic::addValue, classic::contains), n, present, absent);
+        classic = null;
+
+        BlockedBloomFilter sized = new BlockedBloomFilter(n, fpp);
+        run("Blocked（目标误判率）", sized.getMemoryBytes(), sized.getNumHashes(),
+                wrap(sized::addValue, sized::contains), n, present, absent);
+        sized = null;
+
+        long bits = BloomFilter.optimalNumOfBits(n, fpp);
+        BlockedBloomFilter same = new BlockedBloomFilter(bits, BloomFilter.optimalNumOfHashes(n, bits), new Murmur3Hash());
+        run("Blocked（相同位数）", same.getMemoryBytes(), same.getNumHashes(),
+                wrap(same::addValue, same::contains), n, present, absent);
+    }
+
+    /**
+     * 只计算散列的耗时，查询耗时减去它约为访问位数组的耗时
+     */
+    private static void hashOnly(String[] present, String[] absent) {
+        Murmur3Hash hash = new Murmur3Hash();
+        long[] out = new long[2];
+        long sink = 0;
+        long presentNanos = 0;
+        long absentNanos = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (String value : present) {
+                hash.hash128(value, out);
+                sink += out[0];
+            }
+            presentNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (String value : absent) {
+                hash.hash128(value, out);
+                sink += out[1];
+            }
+            absentNanos = System.nanoTime() - start;
+        }
+        System.out.printf("%-22s %10s %4s %12s %12.1f %12.1f%s%n", "仅散列", "-", "-", "-",
+                (double) presentNanos / present.length, (double) absentNanos / absent.length, sink == 0 ? " " : "");
+    }
+
+    private static Filter wrap(java.util.function.Consumer<String> add, java.util.function.Predicate<String> contains) {
+        return new Filter() {
+            @Override
+            public void add(String value) {
+                add.accept(value);
+            }
+
+            @Override
+            public boolean contains(String value) {
+                return contains.test(value);
+            }
+        };
+    }
+
+    private static void run(String name, long memoryBytes, int k, Filter filter, int n, String[] present, String[] absent) {
+        for (int i = 0; i < n; i++) {
+            filter.add(BloomFilterFpp.randomWord(i));
+        }
+        // 第一轮预热 JIT，第二轮计时
+        long presentNanos = 0;
+        long absentNanos = 0;
+        long falsePositives = 0;
+        for (int round = 0; round < 2; round++) {
+            long hits = 0;
+            long start = System.nanoTime();
+            for (String value : present) {
+                if (filter.contains(value)) {
+                    hits++;
+                }
+            }
+            presentNanos = System.nanoTime() - start;
+            if (hits != present.length) {
+                throw new IllegalStateException(name + " lost " + (present.length - hits) + " values");
+            }
+            falsePositives = 0;
+            start = System.nanoTime();
+            for (String value : absent) {
+                if (filter.contains(value)) {
+                    falsePositives++;
+                }
+            }
+            absentNanos = System.nanoTime() - start;
+        }
+        System.out.printf("%-22s %10.1f %4d %12.3e %12.1f %12.1f%n", name, memoryBytes / 1048576.0, k,
+                (double) falsePositives / absent.length,
+                (double) presentNanos / present.length, (double) absentNanos / absent.length);
+    }
+}
@@ -1,7 +1,5 @@
 package bloomfilter;
 
-import java.util.BitSet;
-
 /**
  *
  * 布隆过滤器-简单实现原理
@@ -12,20 +10,77 @@ import java.util.BitSet;
  * 则通过映射函数{f1,f2.....fk}得到k个值{g1,g2.....gk}，然后再判断array[g1],array[g2]......array[gk]是否都为1，
  * 若全为1，则item在S中，否则item不在S中。这个就是布隆过滤器的实现原理。
  *
+ * k 个映射函数不再分别遍历字符串：每个值只计算一次 128 位散列（默认 MurmurHash3），
+ * 再按 Kirsch–Mitzenmacher 双重散列 g_i = h1 + i*h2 得到 k 个位置，误判率与 k 个独立散列函数渐近相同。
+ * 散列函数可以通过构造方法替换。
+ *
+ * 位数 m 和映射的位数 k 由预计插入个数 n 和目标误判率 p 确定：m = -n·ln p / (ln 2)²，k = m/n·ln 2，
+ * 位数组为长度 ⌈m/64⌉ 的 long[]，小过滤器只占几 KB。无参构造方法保持原来的 2^29 位、k=8。
  *
  */
 public class BloomFilter {
 
-    private static final int BIT_SIZE = 2 << 28;//二进制向量的位数，相当于能存储1000万条url左右，误报率为千万分之一
-    private static final int[] seeds = new int[]{3, 5, 7, 11, 13, 31, 37, 61};//用于生成信息指纹的8个随机数，最好选取质数
+    static final long DEFAULT_BIT_SIZE = 2 << 28;//无参构造时二进制向量的位数，相当于能存储1000万条url左右
+    static final int DEFAULT_NUM_HASHES = 8;//无参构造时每个值映射的位数
+    static final long MAX_BIT_SIZE = (long) (Integer.MAX_VALUE - 8) << 6;//long[] 最多能存放的位数
 
-    private BitSet bits = new BitSet(BIT_SIZE);
-    private Hash[] func = new Hash[seeds.length];//用于存储8个随机哈希值对象
+    private final long[] bits;//二进制向量，每个 long 存 64 位
+    private final long bitSize;//二进制向量的位数
+    private final int numHashes;//每个值映射的位数
+    private final BloomHash hash;//散列函数
 
     public BloomFilter() {
-        for (int i = 0; i < seeds.length; i++) {
-            func[i] = new Hash(BIT_SIZE, seeds[i]);
+        this(new Murmur3Hash());
+    }
+
+    public BloomFilter(BloomHash hash) {
+        this(DEFAULT_BIT_SIZE, DEFAULT_NUM_HASHES, hash);
+    }
+
+    /**
+     * 按预计插入个数和目标误判率确定位数和映射的位数
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        this(expectedInsertions, fpp, new Murmur3Hash());
+    }
+
+    public BloomFilter(long expectedInsertions, double fpp, BloomHash hash) {
+        this(optimalNumOfBits(expectedInsertions, fpp),
+                optimalNumOfHashes(expectedInsertions, optimalNumOfBits(expectedInsertions, fpp)), hash);
+    }
+
+    private BloomFilter(long bitSize, int numHashes, BloomHash hash) {
+        if (hash == null) {
+            throw new IllegalArgumentException("hash must not be null");
         }
+        this.bits = new long[(int) ((bitSize + 63) >>> 6)];
+        this.bitSize = bitSize;
+        this.numHashes = numHashes;
+        this.hash = hash;
+    }
+
+    /**
+     * 插入 n 个值、误判率不超过 p 所需的位数 m = -n·ln p / (ln 2)²，至少 64 位
+     */
+    public static long optimalNumOfBits(long n, double p) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be > 0");
+        }
+        if (!(p > 0 && p < 1)) {
+            throw new IllegalArgumentException("fpp must be in (0, 1)");
+        }
+        double m = Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        if (m > MAX_BIT_SIZE) {
+            throw new IllegalArgumentException("too many bits required: " + (long) m);
+        }
+        return Math.max(64, (long) m);
+    }
+
+    /**
+     * 插入 n 个值、位数为 m 时使误判率最小的映射位数 k = m/n·ln 2，至少为 1
+     */
+    public static int optimalNumOfHashes(long n, long m) {
+        return Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
     }
 
     /**
@@ -34,12 +89,25 @@ public class BloomFilter {
     public void addValue(String value) {
         //将字符串value哈希为8个或多个整数，然后在这些整数的bit上变为1
         if (value != null) {
-            for (Hash f : func)
-                bits.set(f.hash(value), true);
+            long[] hashes = new long[2];
+            hash.hash128(value, hashes);
+            put(hashes[0], hashes[1]);
         }
 
     }
 
+    /**
+     * 按已算好的 128 位散列置位，供共用一次散列的 ScalableBloomFilter 使用
+     */
+    void put(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < numHashes; i++) {
+            combined += h2;
+            long index = index(combined, bitSize);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
     /**
      * 判断字符串是否包含在布隆过滤器中
      */
@@ -47,18 +115,60 @@ public class BloomFilter {
         if (value == null)
             return false;
 
-        boolean ret = true;
-
         //将要比较的字符串重新以上述方法计算hash值，再与布隆过滤器比对
-        for (Hash f : func)
-            ret = ret && bits.get(f.hash(value));
-        return ret;
+        //散列缓冲区每次调用单独分配，查询不修改任何状态，建好的过滤器可以被多个线程同时查询
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        return mightContain(hashes[0], hashes[1]);
+    }
+
+    /**
+     * 按已算好的 128 位散列判断是否可能存在
+     */
+    boolean mightContain(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < numHashes; i++) {
+            combined += h2;
+            long index = index(combined, bitSize);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 双重散列的第 i 个值映射到 [0, size) 的位置，去掉符号位后取模
+     */
+    static long index(long combined, long size) {
+        return (combined & Long.MAX_VALUE) % size;
+    }
+
+    /**
+     * 二进制向量的位数
+     */
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    /**
+     * 每个值映射的位数
+     */
+    public int getNumHashes() {
+        return numHashes;
     }
 
     /**
-     * 随机哈希值对象
+     * 位数组占用的字节数
      */
+    public long getMemoryBytes() {
+        return 8L * bits.length;
+    }
 
+    /**
+     * 随机哈希值对象，原来的多项式散列，每个种子遍历一次字符串。
+     * 过滤器已改用一次 128 位散列加双重散列，保留它只为兼容和对比误判率（见 BloomFilterFpp）。
+     */
+    @Deprecated
     public static class Hash {
         private int size;//二进制向量数组大小
         private int seed;//随机数种子
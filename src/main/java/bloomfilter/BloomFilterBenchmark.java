@@ -0,0 +1,114 @@
+package bloomfilter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多线程吞吐量对比：外部加锁的 BloomFilter 与无锁的 ConcurrentBloomFilter。
+ * 每个线程交替地添加和查询自己的一组 URL（一半操作是 addValue，一半是 contains），
+ * 统计所有线程在固定时间内完成的操作数。
+ * 用法：BloomFilterBenchmark [线程数，默认 1,2,4,...,64] [每轮秒数，默认 2]
+ */
+public class BloomFilterBenchmark {
+
+    /**
+     * 被测的过滤器，只包含基准测试用到的两个操作
+     */
+    private interface Filter {
+        void add(String value);
+
+        boolean contains(String value);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threadCounts = args.length > 0 ? new int[]{Integer.parseInt(args[0])} : new int[]{1, 2, 4, 8, 16, 32, 64};
+        long millis = args.length > 1 ? (long) (Double.parseDouble(args[1]) * 1000) : 2000;
+
+        System.out.println("CPU 核数：" + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%6s %18s %18s %8s%n", "线程数", "加锁(ops/s)", "无锁(ops/s)", "加速比");
+        for (int threads : threadCounts) {
+            final BloomFilter locked = new BloomFilter();
+            final Object lock = new Object();
+            double lockedOps = measure(threads, millis, new Filter() {
+                @Override
+                public void add(String value) {
+                    synchronized (lock) {
+                        locked.addValue(value);
+                    }
+                }
+
+                @Override
+                public boolean contains(String value) {
+                    synchronized (lock) {
+                        return locked.contains(value);
+                    }
+                }
+            });
+            final ConcurrentBloomFilter concurrent = new ConcurrentBloomFilter();
+            double concurrentOps = measure(threads, millis, new Filter() {
+                @Override
+                public void add(String value) {
+                    concurrent.addValue(value);
+                }
+
+                @Override
+                public boolean contains(String value) {
+                    return concurrent.contains(value);
+                }
+            });
+            System.out.printf("%6d %18.0f %18.0f %8.2f%n", threads, lockedOps, concurrentOps, concurrentOps / lockedOps);
+        }
+    }
+
+    /**
+     * 用 threads 个线程运行 millis 毫秒，返回每秒完成的操作数
+     */
+    private static double measure(int threads, final long millis, final Filter filter) throws InterruptedException {
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong hits = new AtomicLong();  //查询命中次数，防止查询被优化掉
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            Thread thread = new Thread(() -> {
+                // 事先生成字符串，只测量过滤器本身
+                String[] urls = new String[4096];
+                for (int i = 0; i < urls.length; i++) {
+                    urls[i] = "http://www.example" + id + ".com/page/" + i;
+                }
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + millis * 1000000L;
+                long ops = 0;
+                long hit = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 256; i++) {
+                        // 每个 URL 先添加再查询
+                        String url = urls[(int) ((ops >> 1) & (urls.length - 1))];
+                        if ((ops & 1) == 0) {
+                            filter.add(url);
+                        } else if (filter.contains(url)) {
+                            hit++;
+                        }
+                        ops++;
+                    }
+                }
+                total.addAndGet(ops);
+                hits.addAndGet(hit);
+                done.countDown();
+            });
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        if (hits.get() != total.get() / 2) {
+            throw new IllegalStateException("added values must be contained");
+        }
+        return total.get() / (elapsed / 1e9);
+    }
+}
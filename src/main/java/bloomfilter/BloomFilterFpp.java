@@ -0,0 +1,144 @@
+package bloomfilter;
+
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+/**
+ * 测量误判率：原来的 8 个多项式散列与一次 MurmurHash3 加双重散列。
+ * 先插入 n 个 URL，再查询 q 个从未插入的 URL，被判断为存在的比例即误判率，并与理论值 (1 - e^(-kn/m))^k 对比。
+ * 分别使用前缀相同的 URL 和短的随机字符串两种数据，前者编号连续，后者每个字符都是随机的。
+ * 最后按预计插入个数和几个目标误判率创建过滤器，检查实测误判率是否达到目标，
+ * 并检查插入个数远超初始容量时 ScalableBloomFilter 的误判率是否仍在上限以内。
+ * 用法：BloomFilterFpp [插入个数，默认 2000 万] [查询个数，默认 500 万]
+ */
+public class BloomFilterFpp {
+
+    private static final int BIT_SIZE = 2 << 28;  //与 BloomFilter 相同的位数
+    private static final int[] SEEDS = new int[]{3, 5, 7, 11, 13, 31, 37, 61};
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+        int q = args.length > 1 ? Integer.parseInt(args[1]) : 5000000;
+        double k = SEEDS.length;
+        double expected = Math.pow(1 - Math.exp(-k * n / BIT_SIZE), k);
+        System.out.println("位数 m=" + BIT_SIZE + " 散列个数 k=" + SEEDS.length + " 插入 n=" + n + " 查询 q=" + q);
+        System.out.printf("理论误判率：%.3e%n", expected);
+
+        System.out.println("URL（前缀相同、编号连续）：");
+        measure(n, q, i -> "http://www.site" + (i % 100000) + ".com/article/" + i + ".html",
+                i -> "http://www.site" + (i % 100000) + ".com/news/" + i + ".html");
+        System.out.println("12 个随机小写字母：");
+        measure(n, q, i -> randomWord(i), i -> randomWord(-1 - i));
+
+        System.out.println("按预计插入个数和目标误判率确定大小（插入 100 万个随机字符串，查询 200 万个）：");
+        for (double fpp : new double[]{1e-2, 1e-3, 1e-4}) {
+            measureSized(1000000, 2000000, fpp);
+        }
+
+        System.out.println("可扩展过滤器（初始容量 1 万、上限 1e-3，插入个数远超初始容量，查询 200 万个）：");
+        for (int inserted : new int[]{10000, 100000, 1000000, 5000000}) {
+            measureScalable(10000, 1e-3, inserted, 2000000);
+        }
+    }
+
+    private static void measureScalable(long initialCapacity, double fpp, int n, int q) {
+        ScalableBloomFilter filter = new ScalableBloomFilter(initialCapacity, fpp);
+        for (int i = 0; i < n; i++) {
+            filter.addValue(randomWord(i));
+        }
+        long falsePositives = 0;
+        for (int i = 0; i < q; i++) {
+            if (filter.contains(randomWord(-1 - i))) {
+                falsePositives++;
+            }
+        }
+        System.out.printf("  插入 %d：过滤器 %d 个 内存 %.1f KB 估计误判率 %.3e 实测误判率 %.3e%n", n,
+                filter.getFilterCount(), filter.getMemoryBytes() / 1024.0, filter.expectedFpp(),
+                (double) falsePositives / q);
+    }
+
+    private static void measureSized(int n, int q, double fpp) {
+        BloomFilter filter = new BloomFilter(n, fpp);
+        for (int i = 0; i < n; i++) {
+            filter.addValue(randomWord(i));
+        }
+        long falsePositives = 0;
+        for (int i = 0; i < q; i++) {
+            if (filter.contains(randomWord(-1 - i))) {
+                falsePositives++;
+            }
+        }
+        System.out.printf("  目标 %.0e：m=%d k=%d 内存 %.1f KB 实测误判率 %.3e%n", fpp, filter.getBitSize(),
+                filter.getNumHashes(), filter.getMemoryBytes() / 1024.0, (double) falsePositives / q);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void measure(int n, int q, IntFunction<String> inserted, IntFunction<String> absent) {
+        // 原来的方式：每个种子一个多项式散列，BloomFilter.Hash 已过时，只在这里用于对比
+        BloomFilter.Hash[] func = new BloomFilter.Hash[SEEDS.length];
+        for (int i = 0; i < SEEDS.length; i++) {
+            func[i] = new BloomFilter.Hash(BIT_SIZE, SEEDS[i]);
+        }
+        BitSet bits = new BitSet(BIT_SIZE);
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            String value = inserted.apply(i);
+            for (BloomFilter.Hash f : func) {
+                bits.set(f.hash(value));
+            }
+        }
+        long addNanos = System.nanoTime() - start;
+        long falsePositives = 0;
+        for (int i = 0; i < q; i++) {
+            String value = absent.apply(i);
+            boolean all = true;
+            for (BloomFilter.Hash f : func) {
+                if (!bits.get(f.hash(value))) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                falsePositives++;
+            }
+        }
+        report("多项式散列 x8", falsePositives, q, addNanos, n);
+        bits = null;
+
+        // 一次 MurmurHash3 加双重散列
+        BloomFilter filter = new BloomFilter(new Murmur3Hash());
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            filter.addValue(inserted.apply(i));
+        }
+        addNanos = System.nanoTime() - start;
+        falsePositives = 0;
+        for (int i = 0; i < q; i++) {
+            if (filter.contains(absent.apply(i))) {
+                falsePositives++;
+            }
+        }
+        report("Murmur3 双重散列", falsePositives, q, addNanos, n);
+    }
+
+    /**
+     * 由编号确定的 12 个随机小写字母，不同编号几乎不会重复
+     */
+    static String randomWord(long i) {
+        long z = i * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        char[] chars = new char[12];
+        for (int j = 0; j < chars.length; j++) {
+            chars[j] = (char) ('a' + (int) Long.remainderUnsigned(z, 26));
+            z = Long.divideUnsigned(z, 26);
+        }
+        return new String(chars);
+    }
+
+    private static void report(String name, long falsePositives, int q, long addNanos, int n) {
+        System.out.printf("  %-16s 误判率：%.3e（%d/%d） 插入：%.1f ns/个%n",
+                name, (double) falsePositives / q, falsePositives, q, (double) addNanos / n);
+    }
+}
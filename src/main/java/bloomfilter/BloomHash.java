@@ -0,0 +1,14 @@
+package bloomfilter;
+
+/**
+ * 布隆过滤器使用的散列函数。每个值只计算一次 128 位散列，
+ * k 个位置由两个 64 位的半部分按 Kirsch–Mitzenmacher 双重散列 g_i = h1 + i*h2 得到。
+ * 实现必须是无状态的，可以被多个线程同时调用。
+ */
+public interface BloomHash {
+
+    /**
+     * 计算 value 的 128 位散列，低 64 位写入 out[0]，高 64 位写入 out[1]
+     */
+    void hash128(String value, long[] out);
+}
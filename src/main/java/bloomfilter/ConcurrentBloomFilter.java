@@ -0,0 +1,116 @@
+package bloomfilter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 线程安全的布隆过滤器，可以被多个线程同时 addValue 和 contains，不需要外部加锁。
+ * 位数组存放在 AtomicLongArray 中，每个 long 存 64 位：
+ * 置位时先读出所在的 long，该位已经是 1 就直接返回，否则用 CAS 写入，失败说明有其他线程同时修改了同一个 long，重读后重试；
+ * 查询只读，不做任何写操作。位只会从 0 变为 1，因此某个线程 addValue 返回后，所有线程 contains 都能看到它。
+ * 散列方式和大小的确定方式与 BloomFilter 相同，参数和散列函数相同时两者对同一组字符串设置的位完全一致。
+ */
+public class ConcurrentBloomFilter {
+
+    private final AtomicLongArray words;//二进制向量，每个 long 存 64 位
+    private final long bitSize;//二进制向量的位数
+    private final int numHashes;//每个值映射的位数
+    private final BloomHash hash;//散列函数，必须是无状态的
+
+    public ConcurrentBloomFilter() {
+        this(new Murmur3Hash());
+    }
+
+    public ConcurrentBloomFilter(BloomHash hash) {
+        this(BloomFilter.DEFAULT_BIT_SIZE, BloomFilter.DEFAULT_NUM_HASHES, hash);
+    }
+
+    /**
+     * 按预计插入个数和目标误判率确定位数和映射的位数，见 BloomFilter
+     */
+    public ConcurrentBloomFilter(long expectedInsertions, double fpp) {
+        this(expectedInsertions, fpp, new Murmur3Hash());
+    }
+
+    public ConcurrentBloomFilter(long expectedInsertions, double fpp, BloomHash hash) {
+        this(BloomFilter.optimalNumOfBits(expectedInsertions, fpp), BloomFilter.optimalNumOfHashes(
+                expectedInsertions, BloomFilter.optimalNumOfBits(expectedInsertions, fpp)), hash);
+    }
+
+    private ConcurrentBloomFilter(long bitSize, int numHashes, BloomHash hash) {
+        if (hash == null) {
+            throw new IllegalArgumentException("hash must not be null");
+        }
+        this.words = new AtomicLongArray((int) ((bitSize + 63) >>> 6));
+        this.bitSize = bitSize;
+        this.numHashes = numHashes;
+        this.hash = hash;
+    }
+
+    /**
+     * 向过滤器中添加字符串，返回是否有位由 0 变为 1。
+     * 返回 false 说明添加前已经 contains（可能是误判）；多个线程同时添加同一个字符串时，至少有一个返回 true。
+     */
+    public boolean addValue(String value) {
+        if (value == null) {
+            return false;
+        }
+        // 每次调用使用自己的散列缓冲区，不在线程之间共享
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        long combined = hashes[0];
+        boolean changed = false;
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            changed |= set(BloomFilter.index(combined, bitSize));
+        }
+        return changed;
+    }
+
+    /**
+     * 判断字符串是否包含在布隆过滤器中
+     */
+    public boolean contains(String value) {
+        if (value == null) {
+            return false;
+        }
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            if (!get(BloomFilter.index(combined, bitSize))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把第 index 位置为 1，返回该位原来是否为 0
+     */
+    private boolean set(long index) {
+        int i = (int) (index >>> 6);
+        long mask = 1L << index;
+        while (true) {
+            long word = words.get(i);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(i, word, word | mask)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean get(long index) {
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+}
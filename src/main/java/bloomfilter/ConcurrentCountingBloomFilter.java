@@ -0,0 +1,177 @@
+package bloomfilter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的计数布隆过滤器，可以被多个线程同时 addValue、remove 和 contains，不需要外部加锁。
+ * 计数器的存放方式和饱和规则与 CountingBloomFilter 相同，存放在 AtomicLongArray 中，每个 long 存 16 个 4 位计数器：
+ * 修改一个计数器时读出所在的 long，算出新值后用 CAS 写入，失败说明有其他线程同时修改了同一个 long 中的某个计数器，重读后重试。
+ * 一次 addValue 或 remove 对 k 个计数器的修改不是原子的，并发的 contains 可能只看到其中一部分：
+ * 添加过程中判断为不存在、删除过程中判断为存在，都与调用顺序有先后的情况一致。
+ * 与 CountingBloomFilter 一样，只能删除确实添加过的值，每添加一次删除一次。
+ */
+public class ConcurrentCountingBloomFilter {
+
+    private final AtomicLongArray counters;//计数器，每个 long 存 16 个
+    private final long size;//计数器个数
+    private final int numHashes;//每个值映射的计数器个数
+    private final BloomHash hash;//散列函数，必须是无状态的
+    private final LongAdder saturated = new LongAdder();//达到饱和的次数
+
+    public ConcurrentCountingBloomFilter() {
+        this(new Murmur3Hash());
+    }
+
+    public ConcurrentCountingBloomFilter(BloomHash hash) {
+        this(BloomFilter.DEFAULT_BIT_SIZE, BloomFilter.DEFAULT_NUM_HASHES, hash);
+    }
+
+    /**
+     * 按预计插入个数和目标误判率确定计数器个数和映射的个数，见 BloomFilter
+     */
+    public ConcurrentCountingBloomFilter(long expectedInsertions, double fpp) {
+        this(expectedInsertions, fpp, new Murmur3Hash());
+    }
+
+    public ConcurrentCountingBloomFilter(long expectedInsertions, double fpp, BloomHash hash) {
+        this(BloomFilter.optimalNumOfBits(expectedInsertions, fpp), BloomFilter.optimalNumOfHashes(
+                expectedInsertions, BloomFilter.optimalNumOfBits(expectedInsertions, fpp)), hash);
+    }
+
+    private ConcurrentCountingBloomFilter(long size, int numHashes, BloomHash hash) {
+        if (hash == null) {
+            throw new IllegalArgumentException("hash must not be null");
+        }
+        if (size > CountingBloomFilter.MAX_COUNTERS) {
+            throw new IllegalArgumentException("too many counters required: " + size);
+        }
+        this.counters = new AtomicLongArray((int) ((size + 15) >>> 4));
+        this.size = size;
+        this.numHashes = numHashes;
+        this.hash = hash;
+    }
+
+    /**
+     * 向过滤器中添加字符串，k 个计数器各加 1
+     */
+    public void addValue(String value) {
+        if (value == null) {
+            return;
+        }
+        // 每次调用使用自己的散列缓冲区，不在线程之间共享
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            increment(BloomFilter.index(combined, size));
+        }
+    }
+
+    /**
+     * 删除字符串，k 个计数器各减 1，饱和的计数器保持不变。判断为不存在时不做任何修改并返回 false
+     */
+    public boolean remove(String value) {
+        if (value == null) {
+            return false;
+        }
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        if (!contains(hashes)) {
+            return false;
+        }
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            decrement(BloomFilter.index(combined, size));
+        }
+        return true;
+    }
+
+    /**
+     * 判断字符串是否包含在过滤器中，k 个计数器都不为 0 时为 true
+     */
+    public boolean contains(String value) {
+        if (value == null) {
+            return false;
+        }
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        return contains(hashes);
+    }
+
+    private boolean contains(long[] hashes) {
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            long index = BloomFilter.index(combined, size);
+            if (CountingBloomFilter.count(counters.get((int) (index >>> 4)), index) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void increment(long index) {
+        int i = (int) (index >>> 4);
+        long delta = 1L << CountingBloomFilter.shift(index);
+        while (true) {
+            long word = counters.get(i);
+            int c = CountingBloomFilter.count(word, index);
+            if (c == CountingBloomFilter.MAX_COUNT) {
+                return;
+            }
+            if (counters.compareAndSet(i, word, word + delta)) {
+                if (c + 1 == CountingBloomFilter.MAX_COUNT) {
+                    saturated.increment();
+                }
+                return;
+            }
+        }
+    }
+
+    private void decrement(long index) {
+        int i = (int) (index >>> 4);
+        long delta = 1L << CountingBloomFilter.shift(index);
+        while (true) {
+            long word = counters.get(i);
+            int c = CountingBloomFilter.count(word, index);
+            // 饱和的计数器不再减少；为 0 说明删除了没有添加过的值，不能借位到相邻的计数器
+            if (c == 0 || c == CountingBloomFilter.MAX_COUNT) {
+                return;
+            }
+            if (counters.compareAndSet(i, word, word - delta)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 计数器个数
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 每个值映射的计数器个数
+     */
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * 计数器占用的字节数，是相同参数的 BloomFilter 的 4 倍
+     */
+    public long getMemoryBytes() {
+        return 8L * counters.length();
+    }
+
+    /**
+     * 计数器达到饱和的次数，饱和的计数器不会再减少
+     */
+    public long getSaturatedCount() {
+        return saturated.sum();
+    }
+}
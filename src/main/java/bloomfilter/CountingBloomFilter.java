@@ -0,0 +1,174 @@
+package bloomfilter;
+
+/**
+ * 计数布隆过滤器，支持删除。把 BloomFilter 的每一位换成一个 4 位计数器，每个 long 存 16 个：
+ * 添加时 k 个计数器各加 1，删除时各减 1，计数器不为 0 即相当于该位为 1，
+ * 因此过期的值可以逐个删除，不必定期重建整个过滤器。散列方式和大小的确定方式与 BloomFilter 相同，内存是它的 4 倍。
+ * 计数器最大为 15：达到 15 后不再增加也不再减少（饱和），否则减到 0 时会让仍在集合中的其他值被误判为不存在。
+ * 饱和的计数器永远不会归零，只会略微提高误判率；k 取最优值时一个计数器达到 15 的概率约为 1.4e-15·m，实际几乎不会出现，
+ * 出现的次数可以通过 getSaturatedCount 监控。
+ * 只能删除确实添加过的值，每添加一次删除一次：删除一个误判为存在的值会把其他值的计数器减掉，造成漏判。不是线程安全的，
+ * 多线程使用 ConcurrentCountingBloomFilter。
+ */
+public class CountingBloomFilter {
+
+    static final int MAX_COUNT = 15;//计数器的最大值，达到后饱和
+    static final long MAX_COUNTERS = (long) (Integer.MAX_VALUE - 8) << 4;//long[] 最多能存放的计数器个数
+
+    private final long[] counters;//计数器，每个 long 存 16 个
+    private final long size;//计数器个数，相当于 BloomFilter 的位数
+    private final int numHashes;//每个值映射的计数器个数
+    private final BloomHash hash;//散列函数
+    private long saturated = 0;//达到饱和的次数
+
+    public CountingBloomFilter() {
+        this(new Murmur3Hash());
+    }
+
+    public CountingBloomFilter(BloomHash hash) {
+        this(BloomFilter.DEFAULT_BIT_SIZE, BloomFilter.DEFAULT_NUM_HASHES, hash);
+    }
+
+    /**
+     * 按预计插入个数和目标误判率确定计数器个数和映射的个数，见 BloomFilter
+     */
+    public CountingBloomFilter(long expectedInsertions, double fpp) {
+        this(expectedInsertions, fpp, new Murmur3Hash());
+    }
+
+    public CountingBloomFilter(long expectedInsertions, double fpp, BloomHash hash) {
+        this(BloomFilter.optimalNumOfBits(expectedInsertions, fpp), BloomFilter.optimalNumOfHashes(
+                expectedInsertions, BloomFilter.optimalNumOfBits(expectedInsertions, fpp)), hash);
+    }
+
+    private CountingBloomFilter(long size, int numHashes, BloomHash hash) {
+        if (hash == null) {
+            throw new IllegalArgumentException("hash must not be null");
+        }
+        if (size > MAX_COUNTERS) {
+            throw new IllegalArgumentException("too many counters required: " + size);
+        }
+        this.counters = new long[(int) ((size + 15) >>> 4)];
+        this.size = size;
+        this.numHashes = numHashes;
+        this.hash = hash;
+    }
+
+    /**
+     * 向过滤器中添加字符串，k 个计数器各加 1
+     */
+    public void addValue(String value) {
+        if (value == null)
+            return;
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            increment(BloomFilter.index(combined, size));
+        }
+    }
+
+    /**
+     * 删除字符串，k 个计数器各减 1，饱和的计数器保持不变。
+     * 判断为不存在时不做任何修改并返回 false；返回 true 不能说明它确实添加过，调用方要保证只删除添加过的值
+     */
+    public boolean remove(String value) {
+        if (value == null)
+            return false;
+        //只散列一次，判断是否存在和减计数器使用同一组散列值
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        if (!contains(hashes))
+            return false;
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            decrement(BloomFilter.index(combined, size));
+        }
+        return true;
+    }
+
+    /**
+     * 判断字符串是否包含在过滤器中，k 个计数器都不为 0 时为 true
+     */
+    public boolean contains(String value) {
+        if (value == null)
+            return false;
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        return contains(hashes);
+    }
+
+    private boolean contains(long[] hashes) {
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            long index = BloomFilter.index(combined, size);
+            if (count(counters[(int) (index >>> 4)], index) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    private void increment(long index) {
+        int i = (int) (index >>> 4);
+        int c = count(counters[i], index);
+        if (c == MAX_COUNT)
+            return;
+        counters[i] += 1L << shift(index);
+        if (c + 1 == MAX_COUNT)
+            saturated++;
+    }
+
+    private void decrement(long index) {
+        int i = (int) (index >>> 4);
+        int c = count(counters[i], index);
+        //为 0 只会出现在同一个值的 k 个位置有重复、或删除了没有添加过的值时，不能借位到相邻的计数器
+        if (c == 0 || c == MAX_COUNT)
+            return;
+        counters[i] -= 1L << shift(index);
+    }
+
+    /**
+     * 第 index 个计数器在所在 long 中的位移
+     */
+    static int shift(long index) {
+        return (int) (index & 15) << 2;
+    }
+
+    /**
+     * 从所在的 long 中取出第 index 个计数器的值
+     */
+    static int count(long word, long index) {
+        return (int) (word >>> shift(index)) & 15;
+    }
+
+    /**
+     * 计数器个数
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 每个值映射的计数器个数
+     */
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * 计数器占用的字节数，是相同参数的 BloomFilter 的 4 倍
+     */
+    public long getMemoryBytes() {
+        return 8L * counters.length;
+    }
+
+    /**
+     * 计数器达到饱和的次数，饱和的计数器不会再减少
+     */
+    public long getSaturatedCount() {
+        return saturated;
+    }
+}
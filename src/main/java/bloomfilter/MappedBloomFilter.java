@@ -0,0 +1,314 @@
+package bloomfilter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 存放在文件中的布隆过滤器，位数组通过内存映射直接读写，进程重启后打开文件即可继续使用，不必重新添加所有值。
+ * 打开时只读取并校验 64 字节的文件头，不读取位数组，耗时与过滤器大小无关，页面由操作系统按需换入。
+ * 文件格式（小端序）：
+ * <pre>
+ *   int32   MAGIC
+ *   int32   VERSION
+ *   int64   位数 m
+ *   int32   映射的位数 k
+ *   int32   状态：0 为正常关闭，1 为打开后有修改
+ *   int64   addValue 的调用次数
+ *   int32   位数组的 CRC32，只在正常关闭时有效
+ *   byte[24] 保留
+ *   int32   文件头前 60 字节的 CRC32
+ *   int64   ⌈m/64⌉ 个位数组字，从第 64 字节开始
+ * </pre>
+ * force 是持久化点：返回时之前的所有 addValue 都已写到磁盘。位只会从 0 变为 1，
+ * 因此 force 之后即使进程崩溃，文件中也至少包含 force 之前添加的所有值，之后的修改可能只保存了一部分，不会造成漏判。
+ * close 计算位数组的 CRC32 并把状态标记为正常关闭；打开正常关闭的文件后可以用 verify 检查位数组，
+ * 第一次修改前先把状态改为有修改并写到磁盘，校验和失效后不会再被当作有效。
+ * 散列函数不保存在文件中，打开时必须使用与创建时相同的散列函数。不是线程安全的。
+ */
+public class MappedBloomFilter implements Closeable {
+
+    public static final int MAGIC = 0x424C4D31;       //"BLM1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 64;        //文件头长度，位数组从这里开始
+
+    private static final int STATE_CLEAN = 0;         //正常关闭，位数组校验和有效
+    private static final int STATE_DIRTY = 1;         //打开后有修改，位数组校验和无效
+    private static final int CHUNK_SHIFT = 27;        //每个映射区域 2^27 个 long，即 1GB
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final MappedByteBuffer header;            //映射的文件头
+    private final MappedByteBuffer[] chunks;          //映射的位数组，每个区域最多 1GB
+    private final long bitSize;                       //二进制向量的位数
+    private final int numHashes;                      //每个值映射的位数
+    private final BloomHash hash;                     //散列函数
+    private final long[] hashes = new long[2];        //128 位散列值，addValue、contains 共用
+    private long count;                               //addValue 的调用次数
+    private int state;                                //文件头中的状态
+    private boolean closed = false;
+
+    private MappedBloomFilter(FileChannel channel, long bitSize, int numHashes, long count, int state,
+                              BloomHash hash) throws IOException {
+        this.bitSize = bitSize;
+        this.numHashes = numHashes;
+        this.count = count;
+        this.state = state;
+        this.hash = hash;
+        this.header = map(channel, 0, HEADER_BYTES);
+        long words = words(bitSize);
+        int chunkNum = (int) ((words + CHUNK_MASK) >>> CHUNK_SHIFT);
+        this.chunks = new MappedByteBuffer[chunkNum];
+        for (int i = 0; i < chunkNum; i++) {
+            long first = (long) i << CHUNK_SHIFT;
+            chunks[i] = map(channel, HEADER_BYTES + 8 * first, 8 * Math.min(1L << CHUNK_SHIFT, words - first));
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long bytes) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static long words(long bitSize) {
+        return (bitSize + 63) >>> 6;
+    }
+
+    /**
+     * 按预计插入个数和目标误判率创建新的过滤器文件，文件已存在时抛出异常
+     */
+    public static MappedBloomFilter create(Path file, long expectedInsertions, double fpp) throws IOException {
+        return create(file, expectedInsertions, fpp, new Murmur3Hash());
+    }
+
+    public static MappedBloomFilter create(Path file, long expectedInsertions, double fpp, BloomHash hash)
+            throws IOException {
+        if (hash == null) {
+            throw new IllegalArgumentException("hash must not be null");
+        }
+        long bitSize = BloomFilter.optimalNumOfBits(expectedInsertions, fpp);
+        int numHashes = BloomFilter.optimalNumOfHashes(expectedInsertions, bitSize);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // 只写最后一个字节来设置文件长度，位数组在大多数文件系统上是稀疏的全 0 区域，创建也不需要写满文件
+            channel.write(ByteBuffer.allocate(1), HEADER_BYTES + 8 * words(bitSize) - 1);
+            MappedBloomFilter filter = new MappedBloomFilter(channel, bitSize, numHashes, 0, STATE_DIRTY, hash);
+            filter.writeHeader(0);
+            filter.header.force();
+            channel.force(true);
+            return filter;
+        }
+    }
+
+    /**
+     * 打开已有的过滤器文件，只读取并校验文件头，耗时与过滤器大小无关。
+     * 映射建立后即关闭文件通道，映射区域在被回收前一直有效。
+     */
+    public static MappedBloomFilter open(Path file) throws IOException {
+        return open(file, new Murmur3Hash());
+    }
+
+    public static MappedBloomFilter open(Path file, BloomHash hash) throws IOException {
+        if (hash == null) {
+            throw new IllegalArgumentException("hash must not be null");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    throw new IOException("file is too short to be a bloom filter");
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, HEADER_BYTES - 4);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("not a bloom filter file");
+            }
+            if (buffer.getInt(HEADER_BYTES - 4) != (int) crc.getValue()) {
+                throw new IOException("bloom filter header checksum mismatch");
+            }
+            int version = buffer.getInt(4);
+            long bitSize = buffer.getLong(8);
+            int numHashes = buffer.getInt(16);
+            int state = buffer.getInt(20);
+            long count = buffer.getLong(24);
+            if (version != VERSION) {
+                throw new IOException("unsupported bloom filter version: " + version);
+            }
+            if (bitSize <= 0 || bitSize > BloomFilter.MAX_BIT_SIZE || numHashes <= 0
+                    || channel.size() != HEADER_BYTES + 8 * words(bitSize)) {
+                throw new IOException("corrupt bloom filter header: m=" + bitSize + " k=" + numHashes);
+            }
+            if (state != STATE_CLEAN && state != STATE_DIRTY) {
+                throw new IOException("corrupt bloom filter header: state=" + state);
+            }
+            return new MappedBloomFilter(channel, bitSize, numHashes, count, state, hash);
+        }
+    }
+
+    /**
+     * 向过滤器中添加字符串
+     */
+    public void addValue(String value) {
+        if (value == null) {
+            return;
+        }
+        markDirty();
+        hash.hash128(value, hashes);
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            long index = BloomFilter.index(combined, bitSize);
+            long word = index >>> 6;
+            ByteBuffer chunk = chunks[(int) (word >>> CHUNK_SHIFT)];
+            int offset = (int) (word & CHUNK_MASK) << 3;
+            long bits = chunk.getLong(offset);
+            long mask = 1L << index;
+            // 已经是 1 的位不写，避免把只读过的页面变脏
+            if ((bits & mask) == 0) {
+                chunk.putLong(offset, bits | mask);
+            }
+        }
+        count++;
+    }
+
+    /**
+     * 判断字符串是否包含在布隆过滤器中
+     */
+    public boolean contains(String value) {
+        if (value == null) {
+            return false;
+        }
+        hash.hash128(value, hashes);
+        long combined = hashes[0];
+        for (int i = 0; i < numHashes; i++) {
+            combined += hashes[1];
+            long index = BloomFilter.index(combined, bitSize);
+            long word = index >>> 6;
+            long bits = chunks[(int) (word >>> CHUNK_SHIFT)].getLong((int) (word & CHUNK_MASK) << 3);
+            if ((bits & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 持久化点：把修改过的页面写到磁盘，再写入调用次数并写盘文件头。
+     * 耗时取决于上次 force 以来修改过的页面数，与过滤器大小无关。
+     * 正常关闭后打开、还没有修改时文件已经是最新的，不改写文件头，保留其中有效的校验和
+     */
+    public void force() {
+        ensureOpen();
+        if (state == STATE_CLEAN) {
+            return;
+        }
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        writeHeader(0);
+        header.force();
+    }
+
+    /**
+     * 计算位数组的 CRC32 并标记为正常关闭，之后不能再使用。Java 8 不能主动解除映射，映射区域在被回收时释放。
+     * 正常关闭后打开、没有修改时不读取位数组也不改写文件头，保留原来的校验和，磁盘上的损坏仍能被 verify 发现
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (state == STATE_CLEAN) {
+            closed = true;
+            return;
+        }
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        state = STATE_CLEAN;
+        writeHeader(dataChecksum());
+        header.force();
+        closed = true;
+    }
+
+    /**
+     * 检查位数组与正常关闭时记录的 CRC32 是否一致，需要读取整个位数组。
+     * 上次没有正常关闭、或打开后已有修改时没有有效的校验和，返回 false
+     */
+    public boolean verify() {
+        ensureOpen();
+        return state == STATE_CLEAN && header.getInt(32) == dataChecksum();
+    }
+
+    /**
+     * 上次是否正常关闭，且打开后还没有修改
+     */
+    public boolean isClean() {
+        return state == STATE_CLEAN;
+    }
+
+    /**
+     * 第一次修改前先把状态改为有修改并写盘，保证位数组和失效的校验和不会同时被当作有效
+     */
+    private void markDirty() {
+        ensureOpen();
+        if (state == STATE_CLEAN) {
+            state = STATE_DIRTY;
+            writeHeader(0);
+            header.force();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("bloom filter is closed");
+        }
+    }
+
+    private void writeHeader(int dataCrc) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(bitSize).putInt(numHashes).putInt(state).putLong(count)
+                .putInt(dataCrc);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, HEADER_BYTES - 4);
+        buffer.putInt(HEADER_BYTES - 4, (int) crc.getValue());
+        header.clear();
+        header.put(buffer.array());
+    }
+
+    private int dataChecksum() {
+        CRC32 crc = new CRC32();
+        for (MappedByteBuffer chunk : chunks) {
+            crc.update(chunk.duplicate());
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 二进制向量的位数
+     */
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    /**
+     * 每个值映射的位数
+     */
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * addValue 的调用次数，最后一次 force 或 close 时写入文件
+     */
+    public long getCount() {
+        return count;
+    }
+}
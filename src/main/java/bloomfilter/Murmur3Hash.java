@@ -0,0 +1,92 @@
+package bloomfilter;
+
+/**
+ * MurmurHash3 x64 128 位版本。字符串按 UTF-16 小端序的字节计算，直接读取 char，不做编码转换也不分配对象，
+ * 字符串不含未配对的代理字符时，结果与对 value.getBytes(UTF_16LE) 计算 MurmurHash3_x64_128 相同。
+ */
+public class Murmur3Hash implements BloomHash {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final long seed;
+
+    public Murmur3Hash() {
+        this(0);
+    }
+
+    public Murmur3Hash(int seed) {
+        this.seed = seed & 0xffffffffL;
+    }
+
+    @Override
+    public void hash128(String value, long[] out) {
+        long h1 = seed;
+        long h2 = seed;
+        int len = value.length();
+        int i = 0;
+        // 每次处理 16 字节，即 8 个 char
+        for (int bound = len & ~7; i < bound; i += 8) {
+            long k1 = chars(value, i, 4);
+            long k2 = chars(value, i + 4, 4);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int rest = len - i;
+        if (rest > 4) {
+            h2 ^= mixK2(chars(value, i + 4, rest - 4));
+        }
+        if (rest > 0) {
+            h1 ^= mixK1(chars(value, i, Math.min(rest, 4)));
+        }
+        long bytes = 2L * len;
+        h1 ^= bytes;
+        h2 ^= bytes;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        out[0] = h1;
+        out[1] = h2;
+    }
+
+    /**
+     * 把从 from 开始的 count 个 char 按小端序拼成一个 long
+     */
+    private static long chars(String value, int from, int count) {
+        long k = 0;
+        for (int j = 0; j < count; j++) {
+            k |= (long) value.charAt(from + j) << (16 * j);
+        }
+        return k;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
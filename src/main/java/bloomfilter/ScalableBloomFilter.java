@@ -0,0 +1,180 @@
+package bloomfilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可扩展的布隆过滤器（Almeida et al. 2007），适合插入个数事先未知的场景。
+ * 由一串 BloomFilter 组成，第 i 个（从 0 开始）的容量为 initialCapacity·s^i，误判率为 p·(1-r)·r^i，
+ * s 为增长系数，r 为收紧系数。当前过滤器插入的值达到容量时新建下一个，之后只向最新的过滤器插入。
+ * 每个过滤器在容量内的误判率不超过各自的目标，总误判率不超过 Σ p·(1-r)·r^i < p，与插入个数无关。
+ * 查询要依次检查所有过滤器，过滤器个数只随插入个数按对数增长；每个值只计算一次 128 位散列，所有过滤器共用。
+ * 已经可能存在的值不再插入，也不占用容量。添加不是线程安全的；查询不修改任何状态，不再添加时可以被多个线程同时查询。
+ */
+public class ScalableBloomFilter {
+
+    static final double DEFAULT_GROWTH_FACTOR = 2;        //默认增长系数
+    static final double DEFAULT_TIGHTENING_RATIO = 0.85;  //默认收紧系数
+
+    private final long initialCapacity;           //第一个过滤器的容量
+    private final double fpp;                     //总误判率的上限
+    private final double growthFactor;            //每个过滤器的容量是前一个的几倍
+    private final double tighteningRatio;         //每个过滤器的误判率是前一个的几倍
+    private final BloomHash hash;                 //散列函数
+    private final List<Stage> stages = new ArrayList<Stage>();
+    private long count = 0;                       //插入的值个数
+
+    /**
+     * 过滤器及其容量和已插入的值个数
+     */
+    private static final class Stage {
+        final BloomFilter filter;
+        final long capacity;
+        long count = 0;
+
+        Stage(BloomFilter filter, long capacity) {
+            this.filter = filter;
+            this.capacity = capacity;
+        }
+    }
+
+    public ScalableBloomFilter(long initialCapacity, double fpp) {
+        this(initialCapacity, fpp, new Murmur3Hash());
+    }
+
+    public ScalableBloomFilter(long initialCapacity, double fpp, BloomHash hash) {
+        this(initialCapacity, fpp, DEFAULT_GROWTH_FACTOR, DEFAULT_TIGHTENING_RATIO, hash);
+    }
+
+    /**
+     * growthFactor 越大过滤器个数越少、查询越快，但最后一个过滤器可能大部分是空的；
+     * tighteningRatio 越小后面的过滤器越大，一般取 0.8 ~ 0.9
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp, double growthFactor, double tighteningRatio,
+                               BloomHash hash) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("initialCapacity must be > 0");
+        }
+        if (!(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("fpp must be in (0, 1)");
+        }
+        if (!(growthFactor >= 1)) {
+            throw new IllegalArgumentException("growthFactor must be >= 1");
+        }
+        if (!(tighteningRatio > 0 && tighteningRatio < 1)) {
+            throw new IllegalArgumentException("tighteningRatio must be in (0, 1)");
+        }
+        if (hash == null) {
+            throw new IllegalArgumentException("hash must not be null");
+        }
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        this.growthFactor = growthFactor;
+        this.tighteningRatio = tighteningRatio;
+        this.hash = hash;
+        addStage();
+    }
+
+    /**
+     * 新建下一个过滤器，容量和误判率由它的序号决定
+     */
+    private void addStage() {
+        int i = stages.size();
+        long capacity = (long) Math.ceil(initialCapacity * Math.pow(growthFactor, i));
+        double stageFpp = fpp * (1 - tighteningRatio) * Math.pow(tighteningRatio, i);
+        stages.add(new Stage(new BloomFilter(capacity, stageFpp, hash), capacity));
+    }
+
+    /**
+     * 向过滤器中添加字符串，返回是否新插入；已经可能存在的值返回 false
+     */
+    public boolean addValue(String value) {
+        if (value == null) {
+            return false;
+        }
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        if (mightContain(hashes[0], hashes[1])) {
+            return false;
+        }
+        Stage current = stages.get(stages.size() - 1);
+        if (current.count >= current.capacity) {
+            addStage();
+            current = stages.get(stages.size() - 1);
+        }
+        current.filter.put(hashes[0], hashes[1]);
+        current.count++;
+        count++;
+        return true;
+    }
+
+    /**
+     * 判断字符串是否包含在过滤器中
+     */
+    public boolean contains(String value) {
+        if (value == null) {
+            return false;
+        }
+        //散列缓冲区每次调用单独分配，多个线程同时查询时互不影响
+        long[] hashes = new long[2];
+        hash.hash128(value, hashes);
+        return mightContain(hashes[0], hashes[1]);
+    }
+
+    /**
+     * 从最新的过滤器开始检查，最新的最大，最近插入的值也都在其中
+     */
+    private boolean mightContain(long h1, long h2) {
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            if (stages.get(i).filter.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按每个过滤器当前的插入个数估计的误判率 1 - Π(1 - (1 - e^(-k·n_i/m_i))^k)，不超过 getFpp()
+     */
+    public double expectedFpp() {
+        double none = 1;
+        for (Stage stage : stages) {
+            double k = stage.filter.getNumHashes();
+            double fill = -Math.expm1(-k * stage.count / stage.filter.getBitSize());
+            none *= 1 - Math.pow(fill, k);
+        }
+        return 1 - none;
+    }
+
+    /**
+     * 总误判率的上限
+     */
+    public double getFpp() {
+        return fpp;
+    }
+
+    /**
+     * 插入的值个数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 过滤器个数
+     */
+    public int getFilterCount() {
+        return stages.size();
+    }
+
+    /**
+     * 所有过滤器的位数组占用的字节数
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += stage.filter.getMemoryBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,20 @@
+package kmeans;
+
+import java.io.IOException;
+
+/**
+ * 按批读取数据点的数据源，每次只把一批数据读入调用方提供的缓冲区，
+ * 数据集本身不需要全部放在内存里。
+ */
+public interface BatchSource {
+
+    /**
+     * 每个数据点的维度
+     */
+    int dimension();
+
+    /**
+     * 读取最多 maxRows 个点，按行连续写入 buffer，返回实际读取的点数，返回 0 表示数据已读完
+     */
+    int nextBatch(float[] buffer, int maxRows) throws IOException;
+}
@@ -0,0 +1,141 @@
+package kmeans;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * k-means 数据集的二进制格式，全部为小端序：
+ * <pre>
+ *   int32   MAGIC
+ *   int32   维度 dim
+ *   int64   点数 rows
+ *   float32 rows*dim 个数据，按行连续存放
+ * </pre>
+ * 文件可以用 {@link MappedPointStore} 直接内存映射后参与聚类，也可以用 {@link ChannelBatchSource} 按批读取。
+ */
+public class BinaryDataset {
+
+    public static final int MAGIC = 0x4B4D4453;   //"KMDS"
+    public static final int HEADER_BYTES = 16;    //文件头长度，数据从这里开始
+
+    private BinaryDataset() {
+    }
+
+    /**
+     * 文件头
+     */
+    public static class Header {
+        public final int dim;
+        public final long rows;
+
+        Header(int dim, long rows) {
+            this.dim = dim;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * 读取并校验文件头，读完后 channel 位于数据开始处
+     */
+    public static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(0);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new IOException("file is too short to be a dataset");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("not a k-means dataset file");
+        }
+        int dim = header.getInt();
+        long rows = header.getLong();
+        if (dim <= 0 || rows < 0 || channel.size() < HEADER_BYTES + rows * dim * 4) {
+            throw new IOException("corrupt dataset header: dim=" + dim + " rows=" + rows);
+        }
+        return new Header(dim, rows);
+    }
+
+    /**
+     * 打开数据集并按批读取，不做内存映射
+     */
+    public static ChannelBatchSource openBatchSource(FileChannel channel) throws IOException {
+        Header header = readHeader(channel);
+        return new ChannelBatchSource(channel, header.dim);
+    }
+
+    /**
+     * 把 CSV（每行一个点，逗号分隔）逐行转换为二进制数据集，返回点数。
+     * 维度由第一行确定，空行跳过；内存中只保存一行数据和写缓冲区。
+     */
+    public static long convertCsv(Path csv, Path out) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+             FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_BYTES);
+            int dim = -1;
+            long rows = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (dim < 0) {
+                    dim = fields.length;
+                } else if (fields.length != dim) {
+                    throw new IOException("line " + (rows + 1) + " has " + fields.length + " columns, expected " + dim);
+                }
+                for (String field : fields) {
+                    if (buffer.remaining() < 4) {
+                        flush(channel, buffer);
+                    }
+                    buffer.putFloat(Float.parseFloat(field.trim()));
+                }
+                rows++;
+            }
+            flush(channel, buffer);
+            if (dim < 0) {
+                throw new IOException("program can't get real data");
+            }
+            // 数据写完后再回写文件头
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(dim).putLong(rows);
+            buffer.flip();
+            channel.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return rows;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("usage: BinaryDataset <input.csv> <output.bin>");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long rows = convertCsv(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.println("转换完成，点数：" + rows + "，耗时：" + (System.currentTimeMillis() - start) + "ms");
+    }
+}
@@ -0,0 +1,290 @@
+package kmeans;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 二分 k-means：从包含所有点的一个类开始，每次选一个类用 2-means 分成两个，直到得到 k 个类。
+ * 每一轮只在被拆分的类的成员上运行，所有点每被拆分一次才参与一次计算，
+ * 树平衡时总开销约为 O(n·log k) 次 2-means，而不是每次迭代 O(n·k) 次距离计算，适合 k 为几万的场景（如向量检索的粗量化器）。
+ * 拆分过程保存为 {@link CentroidTree}，预测时沿树向下，只需 O(log k) 次距离计算。
+ * 各类的成员按行号排列在一个数组中，每个类对应其中连续的一段，拆分时原地划分，不复制数据点。
+ */
+public class BisectingKMeans {
+
+    /**
+     * 每轮选择被拆分的类的方式
+     */
+    public enum SplitCriterion {
+        LARGEST,    //成员最多的类
+        WORST       //误差平方和最大的类
+    }
+
+    private final int kNum;                       //最终类的个数
+    private final PointStore store;               //原始数据集
+    private final int len;                        //每个数据点的维度
+    private SplitCriterion criterion = SplitCriterion.LARGEST;
+    private int iterMaxTimes = 100;               //每次 2-means 的最大迭代次数
+    private int trials = 1;                       //每次拆分尝试的 2-means 次数，取 SSE 最小的一次
+    private int parallelism = 1;                  //2-means 的并行度
+    private Random random = new Random();
+    private ForkJoinPool pool;                    //本次 run 中所有 2-means 共用的线程池，并行度为 1 时为 null
+
+    private int[] rows;                           //按类排列的行号
+    private int[] assignment;                     //每个点所属类的编号，与 CentroidTree 的叶子编号一致
+    private double sse;                           //误差平方和
+    private CentroidTree tree;
+
+    /**
+     * 一个待拆分的类，即树的一个叶子
+     */
+    private static class Leaf {
+        final int node;                           //树中的节点编号
+        final int from;                           //在 rows 中的起始位置
+        final int to;                             //在 rows 中的结束位置（不含）
+        final double sse;                         //成员到中心距离的平方之和
+
+        Leaf(int node, int from, int to, double sse) {
+            this.node = node;
+            this.from = from;
+            this.to = to;
+            this.sse = sse;
+        }
+    }
+
+    public BisectingKMeans(int k, PointStore store) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be the number > 0");
+        }
+        if (store == null || store.size() == 0) {
+            throw new IllegalArgumentException("program can't get real data");
+        }
+        if (k > store.size()) {
+            throw new IllegalArgumentException("k must not be greater than the number of points");
+        }
+        this.kNum = k;
+        this.store = store;
+        this.len = store.dimension();
+    }
+
+    public void setSplitCriterion(SplitCriterion criterion) {
+        this.criterion = criterion;
+    }
+
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 设置每次 2-means 的最大迭代次数
+     */
+    public void setIterMaxTimes(int iterMaxTimes) {
+        if (iterMaxTimes <= 0) {
+            throw new IllegalArgumentException("iterMaxTimes must be > 0");
+        }
+        this.iterMaxTimes = iterMaxTimes;
+    }
+
+    /**
+     * 设置每次拆分尝试的 2-means 次数，取 SSE 最小的一次
+     */
+    public void setTrials(int trials) {
+        if (trials <= 0) {
+            throw new IllegalArgumentException("trials must be > 0");
+        }
+        this.trials = trials;
+    }
+
+    /**
+     * 设置每次 2-means 的并行度，只对成员足够多的类有效。每次 run 只创建一个线程池，所有拆分共用
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 运行二分 k-means，返回类中心的层次结构。
+     * 所有类都无法再拆分（成员都相同）时提前结束，此时类的个数少于 k。
+     */
+    public CentroidTree run() {
+        pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            return split();
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    private CentroidTree split() {
+        int n = store.size();
+        int capacity = 2 * kNum - 1;
+        float[] centers = new float[capacity * len];
+        int[] left = new int[capacity];
+        int[] right = new int[capacity];
+        int[] nodeFrom = new int[capacity];       //每个节点的成员在 rows 中的区间
+        int[] nodeTo = new int[capacity];
+        Arrays.fill(left, -1);
+        Arrays.fill(right, -1);
+        rows = new int[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = i;
+        }
+        int nodeNum = 1;
+        nodeTo[0] = n;
+        double rootSSE = mean(centers);
+
+        PriorityQueue<Leaf> queue = new PriorityQueue<Leaf>(kNum, (a, b) -> {
+            int c = criterion == SplitCriterion.LARGEST
+                    ? Integer.compare(b.to - b.from, a.to - a.from) : Double.compare(b.sse, a.sse);
+            return c != 0 ? c : Integer.compare(a.node, b.node);
+        });
+        queue.add(new Leaf(0, 0, n, rootSSE));
+        int leaves = 1;
+        // 无法拆分的类移出队列，最后仍是叶子
+        while (leaves < kNum && !queue.isEmpty()) {
+            Leaf leaf = queue.poll();
+            if (leaf.to - leaf.from < 2 || leaf.sse <= 0) {
+                continue;
+            }
+            KMeansRun run = bisect(leaf);
+            if (run == null) {
+                continue;
+            }
+            // 按 2-means 的结果原地划分，第 0 类在前
+            int[] split = run.getAssignment();
+            float[] dist = run.getDist();
+            int[] part = new int[leaf.to - leaf.from];
+            int head = 0;
+            int tail = part.length;
+            double leftSSE = 0;
+            double rightSSE = 0;
+            for (int i = 0; i < part.length; i++) {
+                double d = (double) dist[i] * dist[i];
+                if (split[i] == 0) {
+                    part[head++] = rows[leaf.from + i];
+                    leftSSE += d;
+                } else {
+                    part[--tail] = rows[leaf.from + i];
+                    rightSSE += d;
+                }
+            }
+            System.arraycopy(part, 0, rows, leaf.from, part.length);
+            int l = nodeNum++;
+            int r = nodeNum++;
+            left[leaf.node] = l;
+            right[leaf.node] = r;
+            nodeFrom[l] = leaf.from;
+            nodeTo[l] = leaf.from + head;
+            nodeFrom[r] = leaf.from + head;
+            nodeTo[r] = leaf.to;
+            float[] childCenters = run.getCenters();
+            System.arraycopy(childCenters, 0, centers, l * len, len);
+            System.arraycopy(childCenters, len, centers, r * len, len);
+            queue.add(new Leaf(l, leaf.from, leaf.from + head, leftSSE));
+            queue.add(new Leaf(r, leaf.from + head, leaf.to, rightSSE));
+            leaves++;
+        }
+
+        if (nodeNum < capacity) {
+            centers = Arrays.copyOf(centers, nodeNum * len);
+            left = Arrays.copyOf(left, nodeNum);
+            right = Arrays.copyOf(right, nodeNum);
+        }
+        tree = new CentroidTree(centers, left, right, len);
+        calculateAssignment(Arrays.copyOf(nodeFrom, nodeNum), Arrays.copyOf(nodeTo, nodeNum));
+        return tree;
+    }
+
+    /**
+     * 计算所有点的均值作为根节点的中心，返回所有点到它距离的平方之和
+     */
+    private double mean(float[] centers) {
+        double[] sums = new double[len];
+        for (int i = 0, n = store.size(); i < n; i++) {
+            store.addTo(i, sums, 0);
+        }
+        for (int j = 0; j < len; j++) {
+            centers[j] = (float) (sums[j] / store.size());
+        }
+        float norm = DistanceCompute.squaredNorm(centers, 0, len);
+        double total = 0;
+        for (int i = 0, n = store.size(); i < n; i++) {
+            total += store.squaredDistance(i, centers, 0, norm);
+        }
+        return total;
+    }
+
+    /**
+     * 在 leaf 的成员上运行 2-means，取 SSE 最小的一次；两个类中有空类时返回 null
+     */
+    private KMeansRun bisect(Leaf leaf) {
+        PointStore subset = new RowSubsetPointStore(store, rows, leaf.from, leaf.to);
+        KMeansRun best = null;
+        for (int t = 0; t < trials; t++) {
+            KMeansRun run = new KMeansRun(2, subset);
+            run.setSeed(random.nextLong());
+            run.setIterMaxTimes(iterMaxTimes);
+            if (pool != null) {
+                run.setExecutor(pool);
+            }
+            // KD 树每次拆分都要重建，2-means 直接计算距离即可
+            run.setAlgorithm(KMeansRun.Algorithm.LLOYD);
+            run.fit();
+            if (best == null || run.getSSE() < best.getSSE()) {
+                best = run;
+            }
+        }
+        int[] split = best.getAssignment();
+        int first = 0;
+        for (int a : split) {
+            first += a == 0 ? 1 : 0;
+        }
+        return first == 0 || first == split.length ? null : best;
+    }
+
+    /**
+     * 由各叶子在 rows 中的区间得到每个点所属的类，并计算误差平方和
+     */
+    private void calculateAssignment(int[] nodeFrom, int[] nodeTo) {
+        assignment = new int[store.size()];
+        float[] leafCenters = tree.getLeafCenters();
+        sse = 0;
+        for (int node = 0; node < nodeFrom.length; node++) {
+            int id = tree.leafId(node);
+            if (id < 0) {
+                continue;
+            }
+            float norm = DistanceCompute.squaredNorm(leafCenters, id * len, len);
+            for (int p = nodeFrom[node]; p < nodeTo[node]; p++) {
+                assignment[rows[p]] = id;
+                sse += store.squaredDistance(rows[p], leafCenters, id * len, norm);
+            }
+        }
+    }
+
+    /**
+     * 每个点所属类的编号，与 CentroidTree 的叶子编号一致
+     */
+    public int[] getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * 误差平方和，每个点到所属叶子中心距离的平方之和
+     */
+    public double getSSE() {
+        return sse;
+    }
+
+    public CentroidTree getTree() {
+        return tree;
+    }
+}
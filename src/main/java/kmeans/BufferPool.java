@@ -0,0 +1,100 @@
+package kmeans;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在多次运行之间复用的缓冲区池，按数组长度分组：维度和 k 相同的运行需要的求和缓冲区长度相同，
+ * 点数相同的运行需要的上下界、分配结果缓冲区长度相同。
+ * 取出的数组内容是上一次使用留下的，不做清零，使用方在使用前自行初始化。
+ * 池中保留的数组总字节数不超过 maxRetainedBytes，超出时归还的数组直接丢弃，交给 GC 回收。
+ * 所有方法都是线程安全的，同一个池可以被多个同时运行的 KMeansRun 共用。
+ */
+public class BufferPool {
+
+    private final long maxRetainedBytes;          //池中最多保留的字节数
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<double[]>> doubles =
+            new ConcurrentHashMap<Integer, ConcurrentLinkedQueue<double[]>>();
+    private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<float[]>> floats =
+            new ConcurrentHashMap<Integer, ConcurrentLinkedQueue<float[]>>();
+    private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<int[]>> ints =
+            new ConcurrentHashMap<Integer, ConcurrentLinkedQueue<int[]>>();
+
+    public BufferPool(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("maxRetainedBytes must be >= 0");
+        }
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    public double[] doubles(int length) {
+        double[] array = poll(doubles, length, 8L * length);
+        return array != null ? array : new double[length];
+    }
+
+    public float[] floats(int length) {
+        float[] array = poll(floats, length, 4L * length);
+        return array != null ? array : new float[length];
+    }
+
+    public int[] ints(int length) {
+        int[] array = poll(ints, length, 4L * length);
+        return array != null ? array : new int[length];
+    }
+
+    /**
+     * 归还数组，归还后调用方不能再使用它；null 被忽略
+     */
+    public void release(double[] array) {
+        if (array != null) {
+            offer(doubles, array, array.length, 8L * array.length);
+        }
+    }
+
+    public void release(float[] array) {
+        if (array != null) {
+            offer(floats, array, array.length, 4L * array.length);
+        }
+    }
+
+    public void release(int[] array) {
+        if (array != null) {
+            offer(ints, array, array.length, 4L * array.length);
+        }
+    }
+
+    /**
+     * 池中当前保留的字节数
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    private <T> T poll(ConcurrentHashMap<Integer, ConcurrentLinkedQueue<T>> map, int length, long bytes) {
+        ConcurrentLinkedQueue<T> queue = map.get(length);
+        T array = queue == null ? null : queue.poll();
+        if (array != null) {
+            retainedBytes.addAndGet(-bytes);
+        }
+        return array;
+    }
+
+    private <T> void offer(ConcurrentHashMap<Integer, ConcurrentLinkedQueue<T>> map, T array, int length, long bytes) {
+        // 先占用额度，超出上限时放弃归还
+        if (retainedBytes.addAndGet(bytes) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-bytes);
+            return;
+        }
+        ConcurrentLinkedQueue<T> queue = map.get(length);
+        if (queue == null) {
+            ConcurrentLinkedQueue<T> created = new ConcurrentLinkedQueue<T>();
+            queue = map.putIfAbsent(length, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+        queue.offer(array);
+    }
+}
@@ -0,0 +1,116 @@
+package kmeans;
+
+/**
+ * 二分 k-means 得到的类中心层次结构。每个内部节点有两个子节点，节点的中心是其子树内所有点的均值，
+ * 叶子节点对应最终的 k 个类，叶子编号按从左到右的顺序，相邻编号的类在树上也相邻。
+ * predict 从根节点开始每层只比较两个子节点的中心，树平衡时只需 O(log k) 次距离计算；
+ * 结果是近似的，不一定是 k 个叶子中心里最近的一个。
+ * 对象不可变，多个线程可以同时调用 predict。
+ */
+public final class CentroidTree {
+
+    private final int kNum;                       //叶子个数
+    private final int len;                        //每个数据点的维度
+    private final float[] centers;                //每个节点的中心，nodeNum*len
+    private final int[] left;                     //左子节点，叶子节点为 -1
+    private final int[] right;                    //右子节点，叶子节点为 -1
+    private final int[] leafId;                   //叶子节点的类编号，内部节点为 -1
+    private final float[] leafCenters;            //按类编号排列的叶子中心，kNum*len
+    private int depth;                            //树的深度
+
+    CentroidTree(float[] centers, int[] left, int[] right, int dim) {
+        this.len = dim;
+        this.centers = centers;
+        this.left = left;
+        this.right = right;
+        this.leafId = new int[left.length];
+        int leaves = 0;
+        for (int node = 0; node < left.length; node++) {
+            if (left[node] < 0) {
+                leaves++;
+            }
+        }
+        this.kNum = leaves;
+        this.leafCenters = new float[leaves * dim];
+        numberLeaves();
+    }
+
+    /**
+     * 按从左到右的顺序给叶子编号
+     */
+    private void numberLeaves() {
+        int[] stack = new int[left.length];
+        int[] depths = new int[left.length];
+        int top = 0;
+        int next = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            int d = depths[top];
+            depth = Math.max(depth, d);
+            if (left[node] < 0) {
+                leafId[node] = next;
+                System.arraycopy(centers, node * len, leafCenters, next * len, len);
+                next++;
+            } else {
+                leafId[node] = -1;
+                depths[top] = d + 1;
+                stack[top++] = right[node];
+                depths[top] = d + 1;
+                stack[top++] = left[node];
+            }
+        }
+    }
+
+    /**
+     * 沿树向下查找 point 所属的叶子，返回叶子的类编号
+     */
+    public int predict(float[] point) {
+        if (point.length != len) {
+            throw new IllegalArgumentException("length of array must be equal!");
+        }
+        int node = 0;
+        while (left[node] >= 0) {
+            float l = DistanceCompute.squaredEuclidean(point, 0, centers, left[node] * len, len);
+            float r = DistanceCompute.squaredEuclidean(point, 0, centers, right[node] * len, len);
+            node = l <= r ? left[node] : right[node];
+        }
+        return leafId[node];
+    }
+
+    /**
+     * 节点的类编号，内部节点为 -1
+     */
+    int leafId(int node) {
+        return leafId[node];
+    }
+
+    public int getK() {
+        return kNum;
+    }
+
+    public int getDimension() {
+        return len;
+    }
+
+    /**
+     * 树的深度，只有根节点时为 0
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 返回按类编号排列的叶子中心的副本，kNum*len
+     */
+    public float[] getLeafCenters() {
+        return leafCenters.clone();
+    }
+
+    /**
+     * 由叶子中心生成精确查找最近中心的模型
+     */
+    public KMeansModel toModel() {
+        return new KMeansModel(leafCenters, kNum, len);
+    }
+}
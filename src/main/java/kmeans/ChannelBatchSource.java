@@ -0,0 +1,50 @@
+package kmeans;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * 从文件通道按批读取数据点，数据为按行连续存放的 float32（小端序），从通道当前位置开始读取。
+ * 读取 {@link BinaryDataset} 格式的文件时用 BinaryDataset.openBatchSource 跳过文件头。
+ * 读取用的 ByteBuffer 只分配一次，大小为一批数据。
+ */
+public class ChannelBatchSource implements BatchSource {
+    private final ReadableByteChannel channel;
+    private final int dim;
+    private ByteBuffer bytes;
+
+    public ChannelBatchSource(ReadableByteChannel channel, int dim) {
+        if (channel == null || dim <= 0) {
+            throw new IllegalArgumentException("channel must not be null and dim must be > 0");
+        }
+        this.channel = channel;
+        this.dim = dim;
+    }
+
+    @Override
+    public int dimension() {
+        return dim;
+    }
+
+    @Override
+    public int nextBatch(float[] buffer, int maxRows) throws IOException {
+        int rowBytes = dim * 4;
+        if (bytes == null || bytes.capacity() < maxRows * rowBytes) {
+            bytes = ByteBuffer.allocateDirect(maxRows * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        bytes.clear();
+        bytes.limit(maxRows * rowBytes);
+        while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+            // 一直读到缓冲区满或者文件结束
+        }
+        bytes.flip();
+        int rows = bytes.remaining() / rowBytes;
+        if (rows * rowBytes != bytes.remaining()) {
+            throw new IOException("truncated row at end of channel");
+        }
+        bytes.asFloatBuffer().get(buffer, 0, rows * dim);
+        return rows;
+    }
+}
@@ -0,0 +1,181 @@
+package kmeans;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * k-means 运行过程中的检查点：某次迭代更新后的类中心、迭代次数、随机数状态和收敛指标。
+ * 分配步骤只依赖类中心，因此从检查点继续运行与不中断地运行得到相同的结果。
+ * 二进制格式（大端序）：int32 MAGIC, int32 k, int32 dim, int32 点数, int32 迭代次数, byte 是否已收敛,
+ * int64 随机数状态, int64 累计距离次数, int64 累计跳过次数, int64 本次迭代改变所属类的点数,
+ * float32 本次迭代类中心最大移动距离的平方, float32 k*dim 个中心数据, int32 以上所有字节的 CRC32。
+ * 写入时先写到同一目录下的临时文件并刷到磁盘，再原子地替换目标文件，中途被打断时旧的检查点仍然完整。
+ */
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x4B4D4331;  //"KMC1"
+
+    final int kNum;                               //簇的个数
+    final int len;                                //每个数据点的维度
+    final int size;                               //数据点个数，恢复时用于校验数据集
+    final int iteration;                          //已完成的迭代次数
+    final boolean converged;                      //是否已经收敛
+    final long randomState;                       //随机数生成器的状态
+    final long distanceCount;                     //累计计算的距离次数
+    final long skippedCount;                      //累计跳过的距离次数
+    final long changedCount;                      //最后一次迭代改变所属类的点数
+    final float maxShift;                         //最后一次迭代类中心移动距离平方的最大值
+    final float[] centers;                        //类中心，kNum*len
+
+    Checkpoint(int k, int dim, int size, int iteration, boolean converged, long randomState, long distanceCount,
+               long skippedCount, long changedCount, float maxShift, float[] centers) {
+        this.kNum = k;
+        this.len = dim;
+        this.size = size;
+        this.iteration = iteration;
+        this.converged = converged;
+        this.randomState = randomState;
+        this.distanceCount = distanceCount;
+        this.skippedCount = skippedCount;
+        this.changedCount = changedCount;
+        this.maxShift = maxShift;
+        this.centers = centers;
+    }
+
+    public int getK() {
+        return kNum;
+    }
+
+    public int getDimension() {
+        return len;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * 返回类中心的副本
+     */
+    public float[] getCenters() {
+        return centers.clone();
+    }
+
+    /**
+     * 原子地写入 file：先写临时文件并 force 到磁盘，再重命名覆盖，最后 force 所在目录使重命名本身落盘
+     */
+    public void write(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                writeTo(Channels.newOutputStream(channel));
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            forceDirectory(dir);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * 把目录项的修改写到磁盘；有的平台（如 Windows）不能以读方式打开目录，此时忽略
+     */
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // 平台不支持目录 fsync，重命名仍然是原子的，只是掉电时可能丢失最后一次检查点
+        }
+    }
+
+    private void writeTo(OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(out, crc), 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeInt(kNum);
+        data.writeInt(len);
+        data.writeInt(size);
+        data.writeInt(iteration);
+        data.writeBoolean(converged);
+        data.writeLong(randomState);
+        data.writeLong(distanceCount);
+        data.writeLong(skippedCount);
+        data.writeLong(changedCount);
+        data.writeFloat(maxShift);
+        for (float v : centers) {
+            data.writeFloat(v);
+        }
+        data.flush();
+        // 校验和本身不计入校验
+        new DataOutputStream(out).writeInt((int) crc.getValue());
+    }
+
+    /**
+     * 读取检查点，格式或校验和不对时抛出 IOException
+     */
+    public static Checkpoint read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 4) {
+            throw new IOException("not a k-means checkpoint: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        int stored = ((bytes[bytes.length - 4] & 0xff) << 24) | ((bytes[bytes.length - 3] & 0xff) << 16)
+                | ((bytes[bytes.length - 2] & 0xff) << 8) | (bytes[bytes.length - 1] & 0xff);
+        if (stored != (int) crc.getValue()) {
+            throw new IOException("corrupt k-means checkpoint (checksum mismatch): " + file);
+        }
+        return readFrom(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+    }
+
+    private static Checkpoint readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not a k-means checkpoint");
+        }
+        int k = data.readInt();
+        int dim = data.readInt();
+        int size = data.readInt();
+        if (k <= 0 || dim <= 0 || size <= 0) {
+            throw new IOException("corrupt k-means checkpoint: k=" + k + " dim=" + dim + " size=" + size);
+        }
+        int iteration = data.readInt();
+        boolean converged = data.readBoolean();
+        long randomState = data.readLong();
+        long distanceCount = data.readLong();
+        long skippedCount = data.readLong();
+        long changedCount = data.readLong();
+        float maxShift = data.readFloat();
+        float[] centers = new float[k * dim];
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = data.readFloat();
+        }
+        return new Checkpoint(k, dim, size, iteration, converged, randomState, distanceCount, skippedCount,
+                changedCount, maxShift, centers);
+    }
+}
@@ -0,0 +1,67 @@
+package kmeans;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 检查点的用法示例：先运行 3 次迭代并写检查点，再从检查点继续运行到收敛，与不中断地运行一次对比。
+ * 用法：CheckpointDemo [点数] [维度] [簇数]
+ */
+public class CheckpointDemo {
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int dim = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        FlatPointStore store = generate(n, dim, 3 * k, 42);
+        Path file = Files.createTempFile("kmeans", ".ckpt");
+        try {
+            KMeansRun full = new KMeansRun(k, store);
+            full.setSeed(7);
+            full.run();
+            System.out.println("不中断运行：迭代 " + full.getIterTimes() + " 次，误差平方和：" + full.getSSE());
+
+            KMeansRun first = new KMeansRun(k, store);
+            first.setSeed(7);
+            first.setIterMaxTimes(3);
+            first.setCheckpoint(file, 1);
+            first.run();
+            System.out.println("中断前：迭代 " + first.getIterTimes() + " 次，检查点写入 " + file);
+
+            KMeansRun resumed = new KMeansRun(k, store);
+            resumed.setSeed(7);
+            resumed.resumeFrom(file);
+            Set<Cluster> clusterSet = resumed.run();
+            System.out.println("从检查点继续：迭代 " + resumed.getIterTimes() + " 次，误差平方和：" + resumed.getSSE());
+            for (Cluster cluster : clusterSet) {
+                System.out.println(cluster);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * k 个高斯簇，簇中心在 [-5, 5] 内均匀分布，簇内标准差为 1
+     */
+    private static FlatPointStore generate(int n, int dim, int k, long seed) {
+        Random random = new Random(seed);
+        float[] means = new float[k * dim];
+        for (int i = 0; i < means.length; i++) {
+            means[i] = random.nextFloat() * 10 - 5;
+        }
+        FlatPointStore store = new FlatPointStore(n, dim);
+        float[] row = new float[dim];
+        for (int i = 0; i < n; i++) {
+            int c = random.nextInt(k);
+            for (int j = 0; j < dim; j++) {
+                row[j] = means[c * dim + j] + (float) random.nextGaussian();
+            }
+            store.setRow(i, row);
+        }
+        return store;
+    }
+}
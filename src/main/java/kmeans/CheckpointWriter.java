@@ -0,0 +1,82 @@
+package kmeans;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 在后台线程中写检查点，迭代循环只负责复制一份类中心，不等待磁盘。
+ * 上一次写入还没完成时新的检查点被丢弃，下一个间隔再写，磁盘慢时不会积压。
+ */
+class CheckpointWriter {
+
+    private final Path file;
+    private final ExecutorService executor;
+    private Future<?> pending;                    //正在进行的写入
+    private volatile IOException failure;         //后台写入的第一个错误
+
+    CheckpointWriter(Path file) {
+        this.file = file;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "kmeans-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交一个检查点，上一次写入还没完成时返回 false
+     */
+    boolean offer(final Checkpoint checkpoint) {
+        if (pending != null && !pending.isDone()) {
+            return false;
+        }
+        pending = executor.submit(() -> {
+            try {
+                checkpoint.write(file);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 运行出错时结束后台线程，不再等待和报告写入结果
+     */
+    void abort() {
+        executor.shutdown();
+    }
+
+    /**
+     * 等待正在进行的写入完成，last 不为 null 时再同步写入最终的检查点，然后结束后台线程。
+     * 之前后台写入失败过时抛出 UncheckedIOException。
+     */
+    void close(Checkpoint last) {
+        try {
+            if (pending != null) {
+                pending.get();
+            }
+            if (last != null && failure == null) {
+                last.write(file);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("failed to write k-means checkpoint " + file, failure);
+        }
+    }
+}
@@ -9,25 +9,33 @@ import java.util.List;
 public class Cluster {
     private int id;// 标识
     private Point center;// 中心
-    private List<Point> members = new ArrayList<Point>();// 成员
+    private List<Point> members;// 成员，由 KMeansRun 构建时在第一次访问时才生成
+    private int size;// 成员个数
+    private MemberIndex index;// 分配结果的成员索引，为 null 表示成员由调用方直接维护
 
     public Cluster(int id, Point center) {
-        this.id = id;
-        this.center = center;
+        this(id, center, new ArrayList<Point>());
     }
 
     public Cluster(int id, Point center, List<Point> members) {
         this.id = id;
         this.center = center;
         this.members = members;
+        this.size = members.size();
+    }
+
+    /**
+     * 由分配结果构建的视图，成员在第一次访问时生成
+     */
+    Cluster(int id, Point center, int size, MemberIndex index) {
+        this.id = id;
+        this.center = center;
+        this.size = size;
+        this.index = index;
     }
 
     public void addPoint(Point newPoint) {
-        if (!members.contains(newPoint)){
-            members.add(newPoint);
-        }else{
-            System.out.println("样本数据点 {"+newPoint.toString()+"} 已经存在！");
-        }
+        getMembers().add(newPoint);
     }
 
     public int getId() {
@@ -42,16 +50,40 @@ public class Cluster {
         this.center = center;
     }
 
+    /**
+     * 成员个数，不需要生成成员列表
+     */
+    public int size() {
+        return members != null ? members.size() : size;
+    }
+
+    /**
+     * 成员在数据集中的行号，不需要生成 Point 对象
+     */
+    public int[] getMemberRows() {
+        if (index != null && members == null) {
+            return index.rows(id);
+        }
+        int[] rows = new int[members.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = members.get(i).getId();
+        }
+        return rows;
+    }
+
     public List<Point> getMembers() {
+        if (members == null) {
+            members = index.members(id);
+        }
         return members;
     }
 
     @Override
     public String toString() {
-        String toString = "Cluster \n" + "Cluster_id=" + this.id + ", center:{" + this.center.toString()+"}";
-        for (Point point : members) {
-            toString+="\n"+point.toString();
+        StringBuilder toString = new StringBuilder("Cluster \n" + "Cluster_id=" + this.id + ", center:{" + this.center.toString()+"}");
+        for (Point point : getMembers()) {
+            toString.append("\n").append(point.toString());
         }
-        return toString+"\n";
+        return toString.append("\n").toString();
     }
 }
@@ -3,12 +3,13 @@ package kmeans;
 /**
  * Created by Administrator on 2018/12/21 0021.
  */
+import java.nio.FloatBuffer;
+
 public class DistanceCompute {
     /**
      * 求欧式距离
      */
     public double getEuclideanDis(Point p1, Point p2) {
-        double count_dis = 0;
         float[] p1_local_array = p1.getlocalArray();
         float[] p2_local_array = p2.getlocalArray();
 
@@ -16,10 +17,122 @@ public class DistanceCompute {
             throw new IllegalArgumentException("length of array must be equal!");
         }
 
-        for (int i = 0; i < p1_local_array.length; i++) {
-            count_dis += Math.pow(p1_local_array[i] - p2_local_array[i], 2);
+        return Math.sqrt(squaredEuclidean(p1_local_array, 0, p2_local_array, 0, p1_local_array.length));
+    }
+
+    // 以下为直接作用于 float[] 片段的距离计算核心，a 从 aOff、b 从 bOff 开始各取 len 个元素。
+    // 循环按 8 路展开并使用 8 个独立的累加器，消除相邻迭代之间的加法依赖链，
+    // 让 CPU 可以流水线地执行乘加；维度不是 8 的倍数时由尾部循环处理剩余元素。
+
+    /**
+     * 欧式距离的平方，比较远近时只需比较平方，不必开方
+     */
+    public static float squaredEuclidean(float[] a, int aOff, float[] b, int bOff, int len) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+        int i = 0;
+        for (int bound = len & ~7; i < bound; i += 8) {
+            float d0 = a[aOff + i] - b[bOff + i];
+            float d1 = a[aOff + i + 1] - b[bOff + i + 1];
+            float d2 = a[aOff + i + 2] - b[bOff + i + 2];
+            float d3 = a[aOff + i + 3] - b[bOff + i + 3];
+            float d4 = a[aOff + i + 4] - b[bOff + i + 4];
+            float d5 = a[aOff + i + 5] - b[bOff + i + 5];
+            float d6 = a[aOff + i + 6] - b[bOff + i + 6];
+            float d7 = a[aOff + i + 7] - b[bOff + i + 7];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+            s4 += d4 * d4;
+            s5 += d5 * d5;
+            s6 += d6 * d6;
+            s7 += d7 * d7;
+        }
+        for (; i < len; i++) {
+            float d = a[aOff + i] - b[bOff + i];
+            s0 += d * d;
+        }
+        return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+    }
+
+    /**
+     * 欧式距离的平方，a 为（内存映射的）FloatBuffer，按绝对下标读取，不改变其 position
+     */
+    public static float squaredEuclidean(FloatBuffer a, int aOff, float[] b, int bOff, int len) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int bound = len & ~3; i < bound; i += 4) {
+            float d0 = a.get(aOff + i) - b[bOff + i];
+            float d1 = a.get(aOff + i + 1) - b[bOff + i + 1];
+            float d2 = a.get(aOff + i + 2) - b[bOff + i + 2];
+            float d3 = a.get(aOff + i + 3) - b[bOff + i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < len; i++) {
+            float d = a.get(aOff + i) - b[bOff + i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 点积
+     */
+    public static float dot(float[] a, int aOff, float[] b, int bOff, int len) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+        int i = 0;
+        for (int bound = len & ~7; i < bound; i += 8) {
+            s0 += a[aOff + i] * b[bOff + i];
+            s1 += a[aOff + i + 1] * b[bOff + i + 1];
+            s2 += a[aOff + i + 2] * b[bOff + i + 2];
+            s3 += a[aOff + i + 3] * b[bOff + i + 3];
+            s4 += a[aOff + i + 4] * b[bOff + i + 4];
+            s5 += a[aOff + i + 5] * b[bOff + i + 5];
+            s6 += a[aOff + i + 6] * b[bOff + i + 6];
+            s7 += a[aOff + i + 7] * b[bOff + i + 7];
+        }
+        for (; i < len; i++) {
+            s0 += a[aOff + i] * b[bOff + i];
+        }
+        return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+    }
+
+    /**
+     * 模长的平方
+     */
+    public static float squaredNorm(float[] a, int aOff, int len) {
+        return dot(a, aOff, a, aOff, len);
+    }
+
+    /**
+     * 余弦距离 1 - cos(a, b)，任一向量为零向量时返回 1
+     */
+    public static float cosine(float[] a, int aOff, float[] b, int bOff, int len) {
+        float ab = dot(a, aOff, b, bOff, len);
+        float aa = dot(a, aOff, a, aOff, len);
+        float bb = dot(b, bOff, b, bOff, len);
+        if (aa == 0 || bb == 0) {
+            return 1;
         }
+        return (float) (1 - ab / Math.sqrt((double) aa * bb));
+    }
 
-        return Math.sqrt(count_dis);
+    /**
+     * 在按行存放的 k 个中心中查找离 a[aOff, aOff+len) 最近的一个，只比较距离的平方
+     */
+    public static int nearest(float[] a, int aOff, float[] centers, int k, int len) {
+        int best = 0;
+        float min_dis = squaredEuclidean(a, aOff, centers, 0, len);
+        for (int c = 1; c < k; c++) {
+            float tmp_dis = squaredEuclidean(a, aOff, centers, c * len, len);
+            if (tmp_dis < min_dis) {
+                min_dis = tmp_dis;
+                best = c;
+            }
+        }
+        return best;
     }
 }
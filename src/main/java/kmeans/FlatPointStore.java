@@ -0,0 +1,162 @@
+package kmeans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 扁平存储的数据集：所有数据点按行连续存放在 float[] 中，没有对象头和指针跳转。
+ * 单个 java 数组最多 2^31 个元素，数据量很大时（如 5000 万 * 64 维）按行切成若干块，
+ * 每块行数为 2 的幂，行号的高位选块、低位定位块内偏移。
+ */
+public class FlatPointStore implements PointStore {
+
+    private static final int MAX_CHUNK_FLOATS = 1 << 26;   //每块最多存放的 float 个数（256MB）
+
+    private final int size;                                //数据点个数
+    private final int dim;                                 //数据点维度
+    private final float[][] chunks;                        //按行连续存放的数据块
+    private final int chunkShift;                          //每块行数的 log2
+    private final int chunkMask;                           //块内行号掩码
+    private int duplicateCount;                            //of(rows, true) 去掉的重复点个数
+
+    /**
+     * 分配一个 size 行、dim 维的空数据集，之后通过 setRow 填充。
+     */
+    public FlatPointStore(int size, int dim) {
+        if (size <= 0 || dim <= 0) {
+            throw new IllegalArgumentException("size and dim must be > 0");
+        }
+        this.size = size;
+        this.dim = dim;
+        int rowsPerChunk = Integer.highestOneBit(Math.max(1, MAX_CHUNK_FLOATS / dim));
+        this.chunkShift = Integer.numberOfTrailingZeros(rowsPerChunk);
+        this.chunkMask = rowsPerChunk - 1;
+        int chunkNum = (int) (((long) size + rowsPerChunk - 1) >>> chunkShift);
+        this.chunks = new float[chunkNum][];
+        for (int i = 0; i < chunkNum; i++) {
+            int rows = Math.min(rowsPerChunk, size - (i << chunkShift));
+            chunks[i] = new float[rows * dim];
+        }
+    }
+
+    /**
+     * 直接包装一个按行存放的数组，不做复制。
+     */
+    public FlatPointStore(float[] data, int dim) {
+        if (data == null || dim <= 0 || data.length == 0 || data.length % dim != 0) {
+            throw new IllegalArgumentException("length of data must be a multiple of dim");
+        }
+        this.size = data.length / dim;
+        this.dim = dim;
+        // 只有一块，块内行数取不小于 size 的 2 的幂，行号高位恒为 0
+        this.chunkShift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        this.chunkMask = (int) ((1L << chunkShift) - 1);
+        this.chunks = new float[][]{data};
+    }
+
+    /**
+     * 把 List<float[]> 形式的数据集复制为扁平存储。
+     */
+    public static FlatPointStore of(List<float[]> rows) {
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("program can't get real data");
+        }
+        FlatPointStore store = new FlatPointStore(rows.size(), rows.get(0).length);
+        for (int i = 0, j = rows.size(); i < j; i++) {
+            store.setRow(i, rows.get(i));
+        }
+        return store;
+    }
+
+    /**
+     * 把 List<float[]> 形式的数据集复制为扁平存储，distinct 为 true 时去掉重复的数据点。
+     * 去重在加载时用哈希集合做一次，O(n)；去重后行号为去重后的顺序，去掉的点数由 getDuplicateCount 取得。
+     */
+    public static FlatPointStore of(List<float[]> rows, boolean distinct) {
+        if (!distinct || rows == null) {
+            return of(rows);
+        }
+        Set<RowKey> seen = new HashSet<RowKey>(rows.size() * 2);
+        List<float[]> unique = new ArrayList<float[]>(rows.size());
+        for (float[] row : rows) {
+            if (seen.add(new RowKey(row))) {
+                unique.add(row);
+            }
+        }
+        FlatPointStore store = of(unique);
+        store.duplicateCount = rows.size() - unique.size();
+        return store;
+    }
+
+    /**
+     * 由 of(rows, true) 创建时去掉的重复数据点个数，其他方式创建时为 0
+     */
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * 按内容比较的数据点，用于去重
+     */
+    private static class RowKey {
+        private final float[] values;
+        private final int hash;
+
+        RowKey(float[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RowKey && Arrays.equals(values, ((RowKey) obj).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 设置第 row 个点
+     */
+    public void setRow(int row, float[] values) {
+        if (values.length != dim) {
+            throw new IllegalArgumentException("length of array must be equal!");
+        }
+        System.arraycopy(values, 0, chunks[row >>> chunkShift], (row & chunkMask) * dim, dim);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimension() {
+        return dim;
+    }
+
+    @Override
+    public float squaredDistance(int row, float[] centers, int offset) {
+        return DistanceCompute.squaredEuclidean(chunks[row >>> chunkShift], (row & chunkMask) * dim, centers, offset, dim);
+    }
+
+    @Override
+    public void addTo(int row, double[] sums, int offset) {
+        float[] a = chunks[row >>> chunkShift];
+        int p = (row & chunkMask) * dim;
+        for (int i = 0; i < dim; i++) {
+            sums[offset + i] += a[p + i];
+        }
+    }
+
+    @Override
+    public void copyRow(int row, float[] dst, int offset) {
+        System.arraycopy(chunks[row >>> chunkShift], (row & chunkMask) * dim, dst, offset, dim);
+    }
+}
@@ -0,0 +1,84 @@
+package kmeans;
+
+/**
+ * IEEE 754 半精度浮点数（float16）与 float 之间的转换，java 8 没有内置的 float16 类型，用 short 存放位模式。
+ * 解码用 65536 项的查找表（256KB），距离计算的内层循环中只需一次查表。
+ */
+final class Float16 {
+
+    private static final float[] TO_FLOAT = new float[1 << 16];
+
+    static {
+        for (int h = 0; h < TO_FLOAT.length; h++) {
+            TO_FLOAT[h] = decode(h);
+        }
+    }
+
+    private Float16() {
+    }
+
+    /**
+     * 解码查找表，下标为 short & 0xffff
+     */
+    static float[] table() {
+        return TO_FLOAT;
+    }
+
+    static float toFloat(short h) {
+        return TO_FLOAT[h & 0xffff];
+    }
+
+    /**
+     * float 转为最接近的 float16（舍入到偶数），超出范围的值变为无穷大
+     */
+    static short fromFloat(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = (bits >>> 23) & 0xff;
+        int mant = bits & 0x7fffff;
+        if (exp == 0xff) {
+            // 无穷大和 NaN
+            return (short) (sign | 0x7c00 | (mant != 0 ? 0x200 : 0));
+        }
+        int e = exp - 127 + 15;
+        if (e >= 0x1f) {
+            return (short) (sign | 0x7c00);
+        }
+        if (e <= 0) {
+            // 结果为非规格化数或 0
+            if (e < -10) {
+                return (short) sign;
+            }
+            mant |= 0x800000;
+            int shift = 14 - e;
+            int half = mant >> shift;
+            int rem = mant & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (rem > halfway || (rem == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (e << 10) | (mant >> 13);
+        int rem = mant & 0x1fff;
+        // 进位可能进到指数位，结果仍然正确
+        if (rem > 0x1000 || (rem == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    private static float decode(int h) {
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1f;
+        int mant = h & 0x3ff;
+        if (exp == 0) {
+            float v = mant * 0x1p-24f;
+            return sign != 0 ? -v : v;
+        }
+        if (exp == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
+    }
+}
@@ -0,0 +1,54 @@
+package kmeans;
+
+/**
+ * 把每次迭代的统计数据记录到内存直方图中的监听器，可以在生产环境中一直开启。
+ * SSE 和中心最大移动距离是收敛过程而不是分布，只保留最近一次的值。
+ */
+public class HistogramListener implements KMeansListener {
+    private final Histogram assignNanos = new Histogram();
+    private final Histogram updateNanos = new Histogram();
+    private final Histogram distanceCount = new Histogram();
+    private final Histogram changedCount = new Histogram();
+    private volatile double lastSSE;
+    private volatile double lastMaxShift;
+
+    @Override
+    public void onIteration(IterationStats stats) {
+        assignNanos.record(stats.getAssignNanos());
+        updateNanos.record(stats.getUpdateNanos());
+        distanceCount.record(stats.getDistanceCount());
+        changedCount.record(stats.getChangedCount());
+        lastSSE = stats.getSSE();
+        lastMaxShift = stats.getMaxShift();
+    }
+
+    public Histogram getAssignNanos() {
+        return assignNanos;
+    }
+
+    public Histogram getUpdateNanos() {
+        return updateNanos;
+    }
+
+    public Histogram getDistanceCount() {
+        return distanceCount;
+    }
+
+    public Histogram getChangedCount() {
+        return changedCount;
+    }
+
+    public double getLastSSE() {
+        return lastSSE;
+    }
+
+    public double getLastMaxShift() {
+        return lastMaxShift;
+    }
+
+    @Override
+    public String toString() {
+        return "assignNanos: " + assignNanos + "\nupdateNanos: " + updateNanos + "\ndistanceCount: " + distanceCount
+                + "\nchangedCount: " + changedCount + "\nlastSSE: " + lastSSE + " lastMaxShift: " + lastMaxShift;
+    }
+}
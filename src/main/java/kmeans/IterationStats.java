@@ -0,0 +1,54 @@
+package kmeans;
+
+/**
+ * 一次迭代的统计数据。每次运行只创建一个对象，每次迭代覆盖更新，不产生额外的对象分配。
+ */
+public class IterationStats {
+    int restartId;                                //重复运行中的编号
+    int iteration;                                //迭代序号，从 1 开始
+    long assignNanos;                             //分配步骤耗时
+    long updateNanos;                             //更新类中心步骤耗时
+    long distanceCount;                           //本次迭代计算的距离次数
+    long changedCount;                            //本次迭代改变所属类的点数
+    double sse;                                   //本次分配下各点到更新后类中心距离的平方之和
+    double maxShift;                              //类中心移动距离的最大值
+
+    public int getRestartId() {
+        return restartId;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public long getAssignNanos() {
+        return assignNanos;
+    }
+
+    public long getUpdateNanos() {
+        return updateNanos;
+    }
+
+    public long getDistanceCount() {
+        return distanceCount;
+    }
+
+    public long getChangedCount() {
+        return changedCount;
+    }
+
+    public double getSSE() {
+        return sse;
+    }
+
+    public double getMaxShift() {
+        return maxShift;
+    }
+
+    @Override
+    public String toString() {
+        return "restart=" + restartId + " iteration=" + iteration + " assign=" + assignNanos / 1000 + "us update="
+                + updateNanos / 1000 + "us distances=" + distanceCount + " changed=" + changedCount + " sse=" + sse
+                + " maxShift=" + maxShift;
+    }
+}
@@ -0,0 +1,38 @@
+package kmeans;
+
+import java.util.Iterator;
+
+/**
+ * 从 Iterator<float[]> 按批读取数据点，适合数据由其他程序逐条产生的场景。
+ */
+public class IteratorBatchSource implements BatchSource {
+    private final Iterator<float[]> iterator;
+    private final int dim;
+
+    public IteratorBatchSource(Iterator<float[]> iterator, int dim) {
+        if (iterator == null || dim <= 0) {
+            throw new IllegalArgumentException("iterator must not be null and dim must be > 0");
+        }
+        this.iterator = iterator;
+        this.dim = dim;
+    }
+
+    @Override
+    public int dimension() {
+        return dim;
+    }
+
+    @Override
+    public int nextBatch(float[] buffer, int maxRows) {
+        int rows = 0;
+        while (rows < maxRows && iterator.hasNext()) {
+            float[] point = iterator.next();
+            if (point.length != dim) {
+                throw new IllegalArgumentException("length of array must be equal!");
+            }
+            System.arraycopy(point, 0, buffer, rows * dim, dim);
+            rows++;
+        }
+        return rows;
+    }
+}
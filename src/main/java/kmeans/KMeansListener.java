@@ -0,0 +1,13 @@
+package kmeans;
+
+/**
+ * 每次迭代结束后接收统计数据的监听器。
+ * 回调在运行 k-means 的线程中同步执行，应尽快返回；重复运行时多个运行会在不同线程中同时回调。
+ */
+public interface KMeansListener {
+
+    /**
+     * 一次迭代结束。stats 在每次运行中复用，只在回调期间有效，需要保留时应复制其中的数值。
+     */
+    void onIteration(IterationStats stats);
+}
@@ -0,0 +1,130 @@
+package kmeans;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 训练好的 k-means 模型，只包含类中心，用于在线判断新数据点属于哪个类。
+ * 对象不可变，所有字段在构造后不再修改，多个线程可以不加锁地同时调用 predict；
+ * predict 不分配任何对象。
+ * 二进制格式（大端序）：int32 MAGIC, int32 k, int32 dim, float32 k*dim 个中心数据。
+ */
+public final class KMeansModel {
+
+    private static final int MAGIC = 0x4B4D4D31;  //"KMM1"
+
+    private final int kNum;                       //簇的个数
+    private final int len;                        //每个数据点的维度
+    private final float[] centers;                //类中心，kNum*len，按行连续存放
+
+    public KMeansModel(float[] centers, int k, int dim) {
+        if (k <= 0 || dim <= 0 || centers == null || centers.length != (long) k * dim) {
+            throw new IllegalArgumentException("length of centers must be k * dim");
+        }
+        this.kNum = k;
+        this.len = dim;
+        this.centers = centers.clone();
+    }
+
+    /**
+     * 由运行结束的 KMeansRun 生成模型快照，之后对 run 的修改不影响模型
+     */
+    public static KMeansModel of(KMeansRun run) {
+        float[] centers = run.getCenters();
+        return new KMeansModel(centers, run.getK(), centers.length / run.getK());
+    }
+
+    /**
+     * 返回离 point 最近的类中心编号
+     */
+    public int predict(float[] point) {
+        if (point.length != len) {
+            throw new IllegalArgumentException("length of array must be equal!");
+        }
+        return DistanceCompute.nearest(point, 0, centers, kNum, len);
+    }
+
+    /**
+     * 批量判断，第 i 个点所属类中心编号写入 out[i]
+     */
+    public void predict(float[][] points, int[] out) {
+        if (out.length < points.length) {
+            throw new IllegalArgumentException("out is shorter than points");
+        }
+        for (int i = 0; i < points.length; i++) {
+            out[i] = predict(points[i]);
+        }
+    }
+
+    public int getK() {
+        return kNum;
+    }
+
+    public int getDimension() {
+        return len;
+    }
+
+    /**
+     * 返回第 c 个类中心的副本
+     */
+    public float[] getCenter(int c) {
+        float[] center = new float[len];
+        System.arraycopy(centers, c * len, center, 0, len);
+        return center;
+    }
+
+    /**
+     * 序列化为二进制数据
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(kNum);
+        data.writeInt(len);
+        for (float v : centers) {
+            data.writeFloat(v);
+        }
+        data.flush();
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + 4 * centers.length);
+        try {
+            writeTo(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从二进制数据读取模型，in 逐个读取 float，文件流应先包装为带缓冲的流
+     */
+    public static KMeansModel readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("not a k-means model");
+        }
+        int k = data.readInt();
+        int dim = data.readInt();
+        // 按 long 计算，损坏的数据不会因为乘积溢出而通过检查
+        if (k <= 0 || dim <= 0 || (long) k * dim > Integer.MAX_VALUE) {
+            throw new IOException("corrupt k-means model: k=" + k + " dim=" + dim);
+        }
+        float[] centers = new float[k * dim];
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = data.readFloat();
+        }
+        return new KMeansModel(centers, k, dim);
+    }
+
+    public static KMeansModel fromBytes(byte[] bytes) throws IOException {
+        return readFrom(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,156 @@
+package kmeans;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * k-means|| 选取初始中心（Bahmani et al. 2012）。
+ * k-means++ 每选一个中心就要遍历一次数据集，k 很大时需要 k 次遍历；k-means|| 只做几轮遍历，
+ * 每轮每个点以 min(1, l*D²/φ) 的概率独立地被加入候选集（l 为过采样系数，φ 为当前总代价），
+ * 最后按每个候选点吸引的点数加权，在候选集上做一次 k-means++ 得到 k 个中心。
+ * 每轮遍历在 ForkJoinPool 公共池中按点并行执行；每个点用 (种子, 轮次, 行号) 生成自己的随机数，
+ * 因此结果与线程调度无关，种子相同时结果相同。
+ */
+public class KMeansParallelSeeding implements Seeding {
+    private final double oversampling;            //过采样系数，每轮期望采样 oversampling*k 个候选点
+    private final int rounds;                     //采样轮数
+
+    public KMeansParallelSeeding() {
+        this(2.0, 5);
+    }
+
+    public KMeansParallelSeeding(double oversampling, int rounds) {
+        if (oversampling <= 0 || rounds <= 0) {
+            throw new IllegalArgumentException("oversampling and rounds must be > 0");
+        }
+        this.oversampling = oversampling;
+        this.rounds = rounds;
+    }
+
+    @Override
+    public void chooseCenters(final PointStore store, int k, float[] centers, Random random) {
+        final int n = store.size();
+        final int len = store.dimension();
+        final long seed = random.nextLong();
+        final float[] minDist = new float[n];     //每个点到最近候选点距离的平方
+        final int[] nearest = new int[n];         //每个点最近的候选点，采样时临时标记被选中的点
+
+        // 第一个候选点随机选取
+        float[] candidates = new float[Math.max(1, (int) (oversampling * k)) * len];
+        store.copyRow(random.nextInt(n), candidates, 0);
+        int candidateNum = 1;
+        Arrays.fill(minDist, Float.MAX_VALUE);
+        updateMinDist(store, candidates, 0, 1, minDist, nearest);
+
+        for (int round = 0; round < rounds || candidateNum < k; round++) {
+            double cost = sum(minDist);
+            if (cost <= 0 || round >= rounds + k) {
+                // 所有点都已经是候选点，或者不同的点不足 k 个
+                break;
+            }
+            final double l = oversampling * k;
+            final double phi = cost;
+            final long roundSeed = mix(seed + round);
+            // 并行地独立采样，被选中的点在 nearest 中标记为 -1
+            IntStream.range(0, n).parallel().forEach(i -> {
+                double p = l * minDist[i] / phi;
+                if (p >= 1 || uniform(roundSeed, i) < p) {
+                    nearest[i] = -1;
+                }
+            });
+            // 按行号顺序收集候选点，保证结果确定
+            int from = candidateNum;
+            for (int i = 0; i < n; i++) {
+                if (nearest[i] == -1) {
+                    if ((candidateNum + 1) * len > candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidates.length * 2);
+                    }
+                    store.copyRow(i, candidates, candidateNum * len);
+                    candidateNum++;
+                    nearest[i] = candidateNum - 1;
+                }
+            }
+            updateMinDist(store, candidates, from, candidateNum, minDist, nearest);
+        }
+
+        // 每个候选点的权重为离它最近的点数
+        float[] weights = new float[candidateNum];
+        for (int i = 0; i < n; i++) {
+            weights[nearest[i]]++;
+        }
+        weightedPlusPlus(candidates, weights, candidateNum, len, k, centers, random);
+    }
+
+    /**
+     * 并行地用新加入的候选点 [from, to) 更新每个点的最近距离和最近候选点
+     */
+    private static void updateMinDist(final PointStore store, final float[] candidates, final int from, final int to,
+                                      final float[] minDist, final int[] nearest) {
+        final int len = store.dimension();
+        final float[] norms = new float[to - from];
+        for (int c = from; c < to; c++) {
+            norms[c - from] = DistanceCompute.squaredNorm(candidates, c * len, len);
+        }
+        IntStream.range(0, store.size()).parallel().forEach(i -> {
+            for (int c = from; c < to; c++) {
+                float d = store.squaredDistance(i, candidates, c * len, norms[c - from]);
+                if (d < minDist[i]) {
+                    minDist[i] = d;
+                    nearest[i] = c;
+                }
+            }
+        });
+    }
+
+    /**
+     * 在带权重的候选点上做 k-means++，候选点不足 k 个时重复使用候选点
+     */
+    private static void weightedPlusPlus(float[] candidates, float[] weights, int candidateNum, int len, int k,
+                                         float[] centers, Random random) {
+        float[] minDist = new float[candidateNum];
+        float[] scores = new float[candidateNum];
+        int first = KMeansPlusPlusSeeding.sample(weights, sum(weights), random);
+        System.arraycopy(candidates, first * len, centers, 0, len);
+        Arrays.fill(minDist, Float.MAX_VALUE);
+        for (int id = 0; id < k; id++) {
+            if (id > 0) {
+                double total = 0;
+                for (int c = 0; c < candidateNum; c++) {
+                    scores[c] = weights[c] * minDist[c];
+                    total += scores[c];
+                }
+                int row = KMeansPlusPlusSeeding.sample(scores, total, random);
+                System.arraycopy(candidates, row * len, centers, id * len, len);
+            }
+            for (int c = 0; c < candidateNum; c++) {
+                float d = DistanceCompute.squaredEuclidean(candidates, c * len, centers, id * len, len);
+                minDist[c] = Math.min(minDist[c], d);
+            }
+        }
+    }
+
+    private static double sum(float[] values) {
+        double sum = 0;
+        for (float v : values) {
+            sum += v;
+        }
+        return sum;
+    }
+
+    /**
+     * 由种子和行号生成 [0, 1) 之间的均匀随机数
+     */
+    private static double uniform(long seed, int row) {
+        return (mix(seed ^ (row * 0x9E3779B97F4A7C15L)) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * SplitMix64 的混合函数
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
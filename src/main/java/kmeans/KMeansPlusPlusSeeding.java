@@ -0,0 +1,64 @@
+package kmeans;
+
+import java.util.Random;
+
+/**
+ * k-means++ 选取初始中心（Arthur & Vassilvitskii 2007）：
+ * 第一个中心随机选取，之后每个点被选为下一个中心的概率与它到最近已选中心距离的平方（D²）成正比。
+ * 需要 k 次遍历数据集，额外内存为每个点一个 float。
+ */
+public class KMeansPlusPlusSeeding implements Seeding {
+
+    @Override
+    public void chooseCenters(PointStore store, int k, float[] centers, Random random) {
+        int n = store.size();
+        int len = store.dimension();
+        float[] minDist = new float[n];           //每个点到最近已选中心距离的平方
+        store.copyRow(random.nextInt(n), centers, 0);
+        double total = 0;
+        float firstNorm = DistanceCompute.squaredNorm(centers, 0, len);
+        for (int i = 0; i < n; i++) {
+            minDist[i] = store.squaredDistance(i, centers, 0, firstNorm);
+            total += minDist[i];
+        }
+        for (int id = 1; id < k; id++) {
+            int row = sample(minDist, total, random);
+            store.copyRow(row, centers, id * len);
+            if (id == k - 1) {
+                break;
+            }
+            total = 0;
+            float norm = DistanceCompute.squaredNorm(centers, id * len, len);
+            for (int i = 0; i < n; i++) {
+                float d = store.squaredDistance(i, centers, id * len, norm);
+                if (d < minDist[i]) {
+                    minDist[i] = d;
+                }
+                total += minDist[i];
+            }
+        }
+    }
+
+    /**
+     * 按权重 weights 抽取一个下标，所有权重都为 0 时（不同的点不足 k 个）均匀抽取
+     */
+    static int sample(float[] weights, double total, Random random) {
+        if (total <= 0) {
+            return random.nextInt(weights.length);
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return i;
+            }
+        }
+        // 浮点累计误差导致没有命中时，取最后一个权重不为 0 的下标
+        for (int i = weights.length - 1; i > 0; i--) {
+            if (weights[i] > 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
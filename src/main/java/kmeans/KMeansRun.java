@@ -4,31 +4,126 @@ package kmeans;
  * Created by Administrator on 2018/12/21 0021.
  */
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public class KMeansRun {
+
+    /**
+     * 分配步骤使用的算法
+     */
+    public enum Algorithm {
+        AUTO,       //维度不超过 KD_TREE_MAX_DIM 时使用 KDTREE，否则使用 LLOYD
+        LLOYD,      //每次迭代计算每个点到所有中心的距离
+        HAMERLY,    //维护每个点的距离上下界，利用三角不等式跳过大部分距离计算
+        KDTREE      //在 KD 树上过滤候选中心，整棵子树一次分配，适合低维数据
+    }
+
+    private static final int KD_TREE_MAX_DIM = 8;         //AUTO 模式下使用 KD 树的最大维度
+
+    private static final int MIN_PARTITION_SIZE = 4096;   //每个分区最少的点数
+    private static final int MAX_PARTITIONS = 64;         //最多分区数
+
     private int kNum;                             //簇的个数
-    private int iterNum = 10;                     //迭代次数
+    private int iterNum = 1;                      //重复运行的次数，每次使用不同的初始中心，取 SSE 最小的结果
 
     private int iterMaxTimes = 100000;            //单次迭代最大运行次数
     private int iterRunTimes = 0;                 //单次迭代实际运行次数
     private float disDiff = (float) 0.01;         //单次迭代终止条件，两次运行中类中心的距离差
 
-    private List<float[]> original_data =null;    //用于存放，原始数据集
-    private static List<Point> pointList = null;  //用于存放，原始数据集所构建的点集
-    private DistanceCompute disC = new DistanceCompute();
+    private PointStore store = null;              //用于存放，原始数据集（扁平存储，不为每个点创建 Point）
     private int len = 0;                          //用于记录每个数据点的维度
+    private int parallelism = 1;                  //并行度，1 表示在当前线程顺序执行
+    private RestorableRandom random = new RestorableRandom();//选取初始类中心用的随机数，状态保存在检查点中
+    private Algorithm algorithm = Algorithm.AUTO; //分配步骤使用的算法
+    private Algorithm mode;                       //本次运行实际使用的算法
+    private KdTree kdTree;                        //KD 树，第一次使用时建立，之后各次运行共用
+    private KdTree.Filter kdFilter;               //本次运行在 KD 树上分配用的缓冲区
+    private int restartId = 0;                    //重复运行中的编号
+    private KMeansListener listener;              //每次迭代结束后接收统计数据，为 null 时不统计
+    private IterationStats stats;                 //本次运行复用的统计数据
+    private double normSum;                       //所有点模长平方之和，用于计算每次迭代的 SSE
+    private long changedCount;                    //本次迭代改变所属类的点数
+    private float lastMaxShift;                   //本次迭代类中心移动距离的最大值
+    private Seeding seeding = new KMeansPlusPlusSeeding();//初始类中心的选取策略
+    private boolean spherical = false;            //球面 k-means：类中心归一化为单位长度，按余弦相似度聚类
+    private ForkJoinPool executor;                //多个运行共用的线程池，为 null 时每次运行自己创建
+    private BufferPool bufferPool;                //多个运行共用的缓冲区池，为 null 时直接分配
+    private Path checkpointFile;                  //检查点文件，为 null 时不写检查点
+    private int checkpointInterval;               //每隔多少次迭代写一次检查点
+    private Checkpoint resume;                    //下一次运行从这个检查点继续
+
+    // 以下缓冲区在初始化时一次性分配，迭代过程中不再分配任何对象
+    private float[] centers;                      //类中心，kNum*len，按行连续存放
+    private float[] centerNorms;                  //每个类中心模长的平方，稀疏数据计算距离时使用
+    private int[] assignment;                     //每个点所属类中心的编号
+    private float[] dist;                         //每个点到所属类中心的距离
+    private double[] sums;                        //每个类各维度的求和，kNum*len
+    private int[] counts;                         //每个类的成员个数
+    private long distanceCount;                   //累计计算的距离次数
+    private long skippedCount;                    //累计跳过的距离次数
+    private double sse;                           //误差平方和，每个点到所属类中心距离的平方之和
+
+    // Hamerly 算法使用的缓冲区
+    private float[] upper;                        //每个点到所属中心距离的上界
+    private float[] lower;                        //每个点到第二近中心距离的下界
+    private float[] centerShift;                  //上一次更新中每个中心移动的距离
+    private float[] halfNearest;                  //每个中心到最近的其他中心距离的一半
+    private boolean boundsReady;                  //上下界是否已经初始化
+    private float maxShift;                       //中心移动距离的最大值
+    private int maxShiftId;                       //移动距离最大的中心
+    private float secondMaxShift;                 //中心移动距离的第二大值
+
+    // 点集按行号切成固定个数的分区，分区个数只取决于点数，与并行度无关；
+    // 每个分区先在自己的缓冲区里求部分和，再按分区顺序合并，
+    // 因此顺序执行和并行执行的浮点求和顺序完全一致，结果也完全一致。
+    private int partitions;                       //分区个数
+    private double[][] partSums;                  //每个分区的部分和，并行时每个分区一份，顺序执行时共用一份
+    private int[][] partCounts;                   //每个分区的成员个数
+    private long[][] partStats;                   //每个分区计算、跳过的距离次数和改变所属类的点数
+    private KMeansSteps.Nearest[] partNearest;    //每个分区查找最近中心用的临时结果
+    private ClusterTask clusterTask;              //并行分配的任务树，每次运行建立一次，各次迭代复用
+    private ForkJoinPool pool;                    //并行执行时使用的线程池
 
     public KMeansRun(int k, List<float[]> original_data) {
+        this(k, original_data == null || original_data.isEmpty() ? null : FlatPointStore.of(original_data));
+    }
+
+    public KMeansRun(int k, PointStore store) {
         this.kNum = k;
-        this.original_data = original_data;
-        this.len = original_data.get(0).length;
+        this.store = store;
         //检查规范
         check();
-        //初始化点集。
+        //初始化缓冲区
+        init();
+    }
+
+    /**
+     * 重复运行中的一次运行，与 parent 共用只读的数据集和 KD 树，使用自己的缓冲区
+     */
+    private KMeansRun(KMeansRun parent, int restartId, long seed) {
+        this.restartId = restartId;
+        this.kNum = parent.kNum;
+        this.store = parent.store;
+        this.iterMaxTimes = parent.iterMaxTimes;
+        this.disDiff = parent.disDiff;
+        this.algorithm = parent.algorithm;
+        this.seeding = parent.seeding;
+        this.spherical = parent.spherical;
+        this.kdTree = parent.kdTree;
+        this.listener = parent.listener;
+        this.bufferPool = parent.bufferPool;
+        this.random = new RestorableRandom(seed);
         init();
     }
 
@@ -36,114 +131,728 @@ public class KMeansRun {
      * 检查规范
      */
     private void check() {
-        if (kNum == 0){
+        if (kNum <= 0){
             throw new IllegalArgumentException("k must be the number > 0");
         }
-        if (original_data == null){
+        if (store == null){
             throw new IllegalArgumentException("program can't get real data");
         }
+        if (kNum > store.size()){
+            throw new IllegalArgumentException("k must not be greater than the number of points");
+        }
     }
 
     /**
-     * 初始化数据集，把数组转化为Point类型。
+     * 初始化迭代用的缓冲区。
      */
     private void init() {
-        pointList = new ArrayList<Point>();
-        for (int i = 0, j = original_data.size(); i < j; i++){
-            pointList.add(new Point(i, original_data.get(i)));
+        len = store.dimension();
+        centers = newFloats(kNum * len);
+        centerNorms = newFloats(kNum);
+        assignment = newInts(store.size());
+        dist = newFloats(store.size());
+        sums = newDoubles(kNum * len);
+        counts = newInts(kNum);
+        // 每个分区的部分和要清零、合并，共 partitions*kNum*len 次加法；
+        // 限制它不超过遍历一次所有非零元素的开销，避免高维稀疏数据把时间花在合并上
+        long byWork = Math.max(1, store.nonZeroCount() / ((long) kNum * len));
+        partitions = (int) Math.max(1, Math.min(Math.min(MAX_PARTITIONS, byWork),
+                ((long) store.size() + MIN_PARTITION_SIZE - 1) / MIN_PARTITION_SIZE));
+    }
+
+    // 从缓冲区池中取数组，内容未清零，由使用方初始化
+
+    private float[] newFloats(int length) {
+        return bufferPool != null ? bufferPool.floats(length) : new float[length];
+    }
+
+    private double[] newDoubles(int length) {
+        return bufferPool != null ? bufferPool.doubles(length) : new double[length];
+    }
+
+    private int[] newInts(int length) {
+        return bufferPool != null ? bufferPool.ints(length) : new int[length];
+    }
+
+    /**
+     * 把不再使用的结果缓冲区归还到缓冲区池
+     */
+    private void releaseResults() {
+        if (bufferPool != null) {
+            bufferPool.release(centers);
+            bufferPool.release(centerNorms);
+            bufferPool.release(assignment);
+            bufferPool.release(dist);
+            bufferPool.release(sums);
+            bufferPool.release(counts);
+        }
+        centers = null;
+        centerNorms = null;
+        assignment = null;
+        dist = null;
+        sums = null;
+        counts = null;
+    }
+
+    /**
+     * 设置并行度，大于 1 时分配和求和步骤在 ForkJoinPool 中按分区并行执行；KDTREE 模式下上层过滤之后各子树并行分配。
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 设置重复运行的次数。大于 1 时用 parallelism 个线程同时运行，每次运行使用不同的初始中心，
+     * 保留 SSE 最小的结果；所有运行共用同一份只读的数据集。
+     */
+    public void setIterNum(int iterNum) {
+        if (iterNum <= 0) {
+            throw new IllegalArgumentException("iterNum must be > 0");
+        }
+        this.iterNum = iterNum;
+    }
+
+    /**
+     * 设置单次运行的最大迭代次数，类中心来回振荡时也能结束
+     */
+    public void setIterMaxTimes(int iterMaxTimes) {
+        if (iterMaxTimes <= 0) {
+            throw new IllegalArgumentException("iterMaxTimes must be > 0");
+        }
+        this.iterMaxTimes = iterMaxTimes;
+    }
+
+    /**
+     * 设置是否使用球面 k-means。类中心每次更新后归一化为单位长度，
+     * 此时离点最近的中心就是与点余弦相似度最大的中心；数据点最好事先归一化（见 SparsePointStore.Builder）。
+     */
+    public void setSpherical(boolean spherical) {
+        this.spherical = spherical;
+    }
+
+    /**
+     * 设置共享线程池。多个 KMeansRun 同时运行时共用一个线程池，不再各自创建线程；
+     * 设置后分配步骤和重复运行都提交到该线程池，并行度由线程池决定，setParallelism 不再起作用。
+     * 线程池由调用方关闭。
+     */
+    public void setExecutor(ForkJoinPool executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 设置共享缓冲区池。每次运行的临时缓冲区（分区部分和、Hamerly 上下界等）和重复运行中落选的结果
+     * 在运行结束后归还到池中，供之后维度、k、点数相同的运行复用，减少大数组的分配和 GC。
+     * 应在 run 之前设置；最终结果的缓冲区通过 getCenters 等方法返回给调用方，不会归还。
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * 每 everyIterations 次迭代把当前状态写入检查点文件，运行结束时再写一次最终状态。
+     * 写入在后台线程中进行，迭代循环只复制一份类中心；只支持 iterNum 为 1 的运行。
+     */
+    public void setCheckpoint(Path file, int everyIterations) {
+        if (everyIterations <= 0) {
+            throw new IllegalArgumentException("everyIterations must be > 0");
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = everyIterations;
+    }
+
+    /**
+     * 下一次 run 从检查点继续，而不是重新选取初始中心。
+     * 检查点必须来自 k、维度和点数都相同的运行；配置（算法、球面模式等）也应与原来的运行相同，
+     * 这样得到的结果与不中断地运行完全相同。
+     */
+    public void resumeFrom(Path file) throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(file);
+        if (checkpoint.kNum != kNum || checkpoint.len != len || checkpoint.size != store.size()) {
+            throw new IllegalArgumentException("checkpoint does not match: k=" + checkpoint.kNum + " dim="
+                    + checkpoint.len + " size=" + checkpoint.size);
         }
+        this.resume = checkpoint;
+    }
+
+    /**
+     * 当前状态的检查点，类中心复制一份，之后的迭代不影响它
+     */
+    private Checkpoint snapshot(boolean converged) {
+        return new Checkpoint(kNum, len, store.size(), iterRunTimes, converged, random.getState(), distanceCount,
+                skippedCount, changedCount, lastMaxShift, centers.clone());
+    }
+
+    /**
+     * 从检查点恢复类中心、迭代次数、随机数状态和统计数据，返回是否需要继续迭代
+     */
+    private boolean restore(Checkpoint checkpoint) {
+        System.arraycopy(checkpoint.centers, 0, centers, 0, centers.length);
+        calculateCenterNorms();
+        iterRunTimes = checkpoint.iteration;
+        random.setState(checkpoint.randomState);
+        distanceCount = checkpoint.distanceCount;
+        skippedCount = checkpoint.skippedCount;
+        changedCount = checkpoint.changedCount;
+        lastMaxShift = checkpoint.maxShift;
+        return !checkpoint.converged;
+    }
+
+    /**
+     * 设置每次迭代结束后接收统计数据的监听器
+     */
+    public void setListener(KMeansListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 设置分配步骤使用的算法
+     */
+    public void setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * 设置随机数种子，种子相同时顺序执行和并行执行得到相同的结果。
+     */
+    public void setSeed(long seed) {
+        this.random = new RestorableRandom(seed);
+    }
+
+    /**
+     * 设置初始类中心的选取策略
+     */
+    public void setSeeding(Seeding seeding) {
+        this.seeding = seeding;
     }
 
     /**
-     * 随机选取中心点，构建成中心类。
+     * 按选取策略选取初始类中心。
      */
-    private Set<Cluster> chooseCenterCluster() {
-        Set<Cluster> clusterSet = new HashSet<Cluster>();
-        Random random = new Random();
-        for (int id = 0; id < kNum; ) {
-            Point point = pointList.get(random.nextInt(pointList.size()));
-            // 用于标记是否已经选择过该数据。
-            boolean flag =true;
-            for (Cluster cluster : clusterSet) {
-                if (cluster.getCenter().equals(point)) {
-                    flag = false;
+    private void chooseCenterCluster() {
+        seeding.chooseCenters(store, kNum, centers, random);
+        if (spherical) {
+            for (int c = 0; c < kNum; c++) {
+                float norm = DistanceCompute.squaredNorm(centers, c * len, len);
+                if (norm > 0) {
+                    float scale = (float) (1 / Math.sqrt(norm));
+                    for (int i = 0; i < len; i++) {
+                        centers[c * len + i] *= scale;
+                    }
                 }
             }
-            // 如果随机选取的点没有被选中过，则生成一个cluster
-            if (flag) {
-                Cluster cluster =new Cluster(id, point);
-                clusterSet.add(cluster);
-                id++;
+        }
+        calculateCenterNorms();
+    }
+
+    /**
+     * 为每个点分配一个类，同时累加每个类的各维度之和与成员个数。
+     */
+    private void cluster() {
+        if (mode == Algorithm.KDTREE) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            distanceCount += kdFilter.assign(centers, assignment, sums, counts, pool);
+            changedCount = kdFilter.getChangedCount();
+            return;
+        }
+        if (pool != null) {
+            clusterTask.reset();
+            pool.invoke(clusterTask);
+        }
+        Arrays.fill(sums, 0);
+        Arrays.fill(counts, 0);
+        changedCount = 0;
+        for (int p = 0; p < partitions; p++) {
+            int buf = pool == null ? 0 : p;
+            if (pool == null) {
+                clusterPartition(p, buf);
+            }
+            // 按分区顺序合并部分和
+            double[] ps = partSums[buf];
+            int[] pc = partCounts[buf];
+            for (int i = 0; i < ps.length; i++) {
+                sums[i] += ps[i];
+            }
+            for (int c = 0; c < kNum; c++) {
+                counts[c] += pc[c];
             }
+            distanceCount += partStats[buf][0];
+            skippedCount += partStats[buf][1];
+            changedCount += partStats[buf][2];
         }
-        return clusterSet;
+        boundsReady = mode == Algorithm.HAMERLY;
     }
 
     /**
-     * 为每个点分配一个类！
+     * 为第 p 个分区内的点分配类，结果累加到第 buf 个部分和缓冲区。
      */
-    public void cluster(Set<Cluster> clusterSet){
-        // 计算每个点到K个中心的距离，并且为每个点标记类别号
-        for (Point point : pointList) {
-            float min_dis = Integer.MAX_VALUE;
-            for (Cluster cluster : clusterSet) {
-                float tmp_dis = (float) Math.min(disC.getEuclideanDis(point, cluster.getCenter()), min_dis);
-                if (tmp_dis != min_dis) {
-                    min_dis = tmp_dis;
-                    point.setClusterId(cluster.getId());
-                    point.setDist(min_dis);
+    private void clusterPartition(int p, int buf) {
+        double[] ps = partSums[buf];
+        int[] pc = partCounts[buf];
+        Arrays.fill(ps, 0);
+        Arrays.fill(pc, 0);
+        int n = store.size();
+        int from = (int) ((long) n * p / partitions);
+        int to = (int) ((long) n * (p + 1) / partitions);
+        long computed;
+        long skipped = 0;
+        long changed = 0;
+        KMeansSteps.Nearest nearest = partNearest[buf];
+        if (mode == Algorithm.HAMERLY && boundsReady) {
+            computed = 0;
+            for (int i = from; i < to; i++) {
+                int a = assignment[i];
+                // 所属中心移动后上界变大，其他中心最多移动 maxShift，下界相应变小
+                upper[i] += centerShift[a];
+                lower[i] -= maxShiftExcept(a);
+                float bound = Math.max(halfNearest[a], lower[i]);
+                if (upper[i] > bound) {
+                    // 先收紧上界，仍不满足时再计算到所有中心的距离
+                    upper[i] = (float) Math.sqrt(store.squaredDistance(i, centers, a * len, centerNorms[a]));
+                    computed++;
+                    if (upper[i] > bound) {
+                        if (assignNearest(i, nearest) != a) {
+                            changed++;
+                        }
+                        computed += kNum - 1;
+                    } else {
+                        skipped += kNum - 1;
+                    }
+                } else {
+                    skipped += kNum;
                 }
+                dist[i] = upper[i];
+                a = assignment[i];
+                store.addTo(i, ps, a * len);
+                pc[a]++;
             }
-        }
-        // 新清除原来所有的类中成员。把所有的点，分别加入每个类别
-        for (Cluster cluster : clusterSet) {
-            cluster.getMembers().clear();
-            for (Point point : pointList) {
-                if (point.getClusterid()==cluster.getId()) {
-                    cluster.addPoint(point);
+        } else {
+            computed = (long) (to - from) * kNum;
+            for (int i = from; i < to; i++) {
+                int old = assignment[i];
+                int a = assignNearest(i, nearest);
+                if (a != old) {
+                    changed++;
                 }
+                store.addTo(i, ps, a * len);
+                pc[a]++;
             }
         }
+        partStats[buf][0] = computed;
+        partStats[buf][1] = skipped;
+        partStats[buf][2] = changed;
     }
 
     /**
-     * 计算每个类的中心位置！
+     * 计算第 i 个点到所有中心的距离，记录最近的中心；Hamerly 模式下同时记录上下界。
      */
-    public boolean calculateCenter(Set<Cluster> clusterSet) {
-        boolean ifNeedIter = false;
-        for (Cluster cluster : clusterSet) {
-            List<Point> point_list = cluster.getMembers();
-            float[] sumAll =new float[len];
-            // 所有点，对应各个维度进行求和
-            for (int i = 0; i < len; i++) {
-                for (int j = 0; j < point_list.size(); j++) {
-                    sumAll[i] += point_list.get(j).getlocalArray()[i];
-                }
+    private int assignNearest(int i, KMeansSteps.Nearest nearest) {
+        KMeansSteps.nearest(store, i, centers, centerNorms, kNum, nearest);
+        assignment[i] = nearest.center;
+        dist[i] = (float) Math.sqrt(nearest.dist);
+        if (upper != null) {
+            upper[i] = dist[i];
+            lower[i] = (float) Math.sqrt(nearest.second);
+        }
+        return nearest.center;
+    }
+
+    /**
+     * 除中心 a 以外其他中心的最大移动距离
+     */
+    private float maxShiftExcept(int a) {
+        return a == maxShiftId ? secondMaxShift : maxShift;
+    }
+
+    /**
+     * 按分区二分拆分的并行分配任务，每个分区写入自己的部分和缓冲区。
+     * 整棵任务树在运行开始时建立一次，每次迭代前 reset 后重新提交，迭代中不创建新对象。
+     */
+    private class ClusterTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final ClusterTask left;           //前一半分区，只有一个分区时为 null
+        private final ClusterTask right;          //后一半分区
+
+        ClusterTask(int from, int to) {
+            this.from = from;
+            if (to - from == 1) {
+                left = null;
+                right = null;
+            } else {
+                int mid = (from + to) >>> 1;
+                left = new ClusterTask(from, mid);
+                right = new ClusterTask(mid, to);
+            }
+        }
+
+        /**
+         * 把整棵任务树恢复为未执行的状态，只能在上一次执行完成后调用
+         */
+        void reset() {
+            reinitialize();
+            if (left != null) {
+                left.reset();
+                right.reset();
             }
-            // 计算平均值
-            for (int i = 0; i < sumAll.length; i++) {
-                sumAll[i] = (float) sumAll[i]/point_list.size();
+        }
+
+        @Override
+        protected void compute() {
+            if (left == null) {
+                clusterPartition(from, from);
+                return;
             }
-            // 计算两个新、旧中心的距离，如果任意一个类中心移动的距离大于dis_diff则继续迭代。
-            if(disC.getEuclideanDis(cluster.getCenter(), new Point(sumAll)) > disDiff){
+            invokeAll(left, right);
+        }
+    }
+
+    /**
+     * 计算每个类的中心位置！
+     */
+    private boolean calculateCenter() {
+        boolean ifNeedIter = false;
+        float limit = disDiff * disDiff;
+        maxShift = 0;
+        lastMaxShift = 0;
+        maxShiftId = -1;
+        secondMaxShift = 0;
+        for (int c = 0; c < kNum; c++) {
+            // 空类保留原来的中心
+            float shift = KMeansSteps.updateCenter(centers, sums, counts[c], c, len, spherical);
+            // 如果任意一个类中心移动的距离大于dis_diff则继续迭代。
+            if (shift > limit) {
                 ifNeedIter = true;
             }
-            // 设置新的类中心位置
-            cluster.setCenter(new Point(sumAll));
+            lastMaxShift = Math.max(lastMaxShift, shift);
+            if (centerShift != null) {
+                shift = (float) Math.sqrt(shift);
+                centerShift[c] = shift;
+                if (shift > maxShift) {
+                    secondMaxShift = maxShift;
+                    maxShift = shift;
+                    maxShiftId = c;
+                } else if (shift > secondMaxShift) {
+                    secondMaxShift = shift;
+                }
+            }
+        }
+        calculateCenterNorms();
+        if (halfNearest != null) {
+            calculateHalfNearest();
         }
         return ifNeedIter;
     }
 
+    /**
+     * 计算每个类中心模长的平方
+     */
+    private void calculateCenterNorms() {
+        for (int c = 0; c < kNum; c++) {
+            centerNorms[c] = DistanceCompute.squaredNorm(centers, c * len, len);
+        }
+    }
+
+    /**
+     * 计算每个中心到最近的其他中心距离的一半：点到所属中心的距离不超过它时，不可能有更近的中心。
+     */
+    private void calculateHalfNearest() {
+        Arrays.fill(halfNearest, Float.MAX_VALUE);
+        for (int c = 0; c < kNum; c++) {
+            for (int o = c + 1; o < kNum; o++) {
+                float sum = DistanceCompute.squaredEuclidean(centers, c * len, centers, o * len, len);
+                float half = (float) Math.sqrt(sum) / 2;
+                halfNearest[c] = Math.min(halfNearest[c], half);
+                halfNearest[o] = Math.min(halfNearest[o], half);
+            }
+        }
+    }
+
     /**
      * 运行 k-means
      */
     public Set<Cluster> run() {
-        Set<Cluster> clusterSet= chooseCenterCluster();
-        boolean ifNeedIter = true;
-        while (ifNeedIter) {
-            cluster(clusterSet);
-            ifNeedIter = calculateCenter(clusterSet);
-            iterRunTimes ++ ;
+        fit();
+        return buildClusters();
+    }
+
+    /**
+     * 运行 k-means，但不构建 Cluster 视图，结果只通过 getCenters、getAssignment 和 getDist 取得。
+     * 供 BisectingKMeans 等内部反复运行的调用方使用，省去每次复制分配结果
+     */
+    void fit() {
+        if (chooseMode() == Algorithm.KDTREE && kdTree == null) {
+            kdTree = new KdTree(store);
+        }
+        if (iterNum > 1 && (checkpointFile != null || resume != null)) {
+            throw new IllegalArgumentException("checkpoint is only supported when iterNum == 1");
+        }
+        if (iterNum > 1) {
+            runRestarts();
+        } else {
+            runOnce(parallelism);
+        }
+    }
+
+    /**
+     * 从一组初始中心开始运行一次，直到收敛或达到最大迭代次数
+     */
+    private void runOnce(int parallelism) {
+        mode = chooseMode();
+        boolean shared = executor != null;
+        int buffers = shared || parallelism > 1 ? partitions : 1;
+        partSums = new double[buffers][];
+        partCounts = new int[buffers][];
+        for (int b = 0; b < buffers; b++) {
+            partSums[b] = newDoubles(kNum * len);
+            partCounts[b] = newInts(kNum);
+        }
+        partStats = new long[buffers][3];
+        partNearest = new KMeansSteps.Nearest[buffers];
+        for (int b = 0; b < buffers; b++) {
+            partNearest[b] = new KMeansSteps.Nearest();
+        }
+        if (mode == Algorithm.KDTREE) {
+            kdFilter = kdTree.newFilter(kNum, partitions);
+        }
+        if (mode == Algorithm.HAMERLY) {
+            upper = newFloats(store.size());
+            lower = newFloats(store.size());
+            centerShift = newFloats(kNum);
+            halfNearest = newFloats(kNum);
+        }
+        pool = shared ? executor : parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        clusterTask = pool != null ? new ClusterTask(0, partitions) : null;
+        iterRunTimes = 0;
+        // 第一次迭代中所有点都算作改变了所属类
+        Arrays.fill(assignment, -1);
+        if (listener != null) {
+            stats = new IterationStats();
+            stats.restartId = restartId;
+            normSum = KMeansSteps.normSum(store);
+        }
+        CheckpointWriter writer = checkpointFile != null ? new CheckpointWriter(checkpointFile) : null;
+        try {
+            boolean ifNeedIter = true;
+            boolean restored = resume != null;
+            if (restored) {
+                ifNeedIter = restore(resume);
+                resume = null;
+            } else {
+                chooseCenterCluster();
+            }
+            int iterBefore = iterRunTimes;
+            while (ifNeedIter && iterRunTimes < iterMaxTimes) {
+                if (listener == null) {
+                    cluster();
+                    ifNeedIter = calculateCenter();
+                    iterRunTimes ++ ;
+                    if (writer != null && iterRunTimes % checkpointInterval == 0) {
+                        writer.offer(snapshot(!ifNeedIter));
+                    }
+                    continue;
+                }
+                long distanceBefore = distanceCount;
+                long start = System.nanoTime();
+                cluster();
+                long assigned = System.nanoTime();
+                ifNeedIter = calculateCenter();
+                long updated = System.nanoTime();
+                iterRunTimes ++ ;
+                stats.iteration = iterRunTimes;
+                stats.assignNanos = assigned - start;
+                stats.updateNanos = updated - assigned;
+                stats.distanceCount = distanceCount - distanceBefore;
+                stats.changedCount = changedCount;
+                stats.sse = calculateIterationSSE();
+                stats.maxShift = Math.sqrt(lastMaxShift);
+                listener.onIteration(stats);
+                if (writer != null && iterRunTimes % checkpointInterval == 0) {
+                    writer.offer(snapshot(!ifNeedIter));
+                }
+            }
+            if (restored && iterRunTimes == iterBefore) {
+                // 检查点已收敛或已用完迭代次数时没有迭代，分配结果还是 -1，按恢复的类中心分配一次
+                cluster();
+            }
+            calculateDist();
+            if (writer != null) {
+                CheckpointWriter finished = writer;
+                writer = null;
+                finished.close(snapshot(!ifNeedIter));
+            }
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+            if (pool != null && pool != executor) {
+                pool.shutdown();
+            }
+            pool = null;
+            if (bufferPool != null) {
+                for (int b = 0; b < partSums.length; b++) {
+                    bufferPool.release(partSums[b]);
+                    bufferPool.release(partCounts[b]);
+                }
+                bufferPool.release(upper);
+                bufferPool.release(lower);
+                bufferPool.release(centerShift);
+                bufferPool.release(halfNearest);
+            }
+            partSums = null;
+            partCounts = null;
+            partStats = null;
+            partNearest = null;
+            clusterTask = null;
+            kdFilter = null;
+            stats = null;
+            upper = null;
+            lower = null;
+            centerShift = null;
+            halfNearest = null;
+            boundsReady = false;
+        }
+    }
+
+    /**
+     * 本次分配下各点到更新后类中心距离的平方之和，由各类的求和与成员个数得到（见 KMeansSteps.sseTerm）；
+     * 对球面 k-means 和保留原中心的空类同样成立。normSum 每次运行只算一次。
+     */
+    private double calculateIterationSSE() {
+        double total = normSum;
+        for (int c = 0; c < kNum; c++) {
+            total += KMeansSteps.sseTerm(centers, sums, counts[c], c, len);
+        }
+        return Math.max(0, total);
+    }
+
+    /**
+     * 用 parallelism 个线程重复运行 iterNum 次，保留 SSE 最小的一次。
+     * 每次运行的随机数种子事先按顺序生成，SSE 相同时取编号小的，因此结果与线程调度无关。
+     * 运行结束后只保留目前最好的一次，同时占用内存的运行结果不超过 parallelism + 1 份；落选的结果归还到缓冲区池。
+     * 设置了共享线程池时，各次运行提交到共享线程池并按编号顺序 join：即使 run 本身在该线程池的任务中调用，
+     * 等待的线程也会帮助执行尚未开始的运行，不会占住线程池的线程。
+     */
+    private void runRestarts() {
+        boolean shared = executor != null;
+        ForkJoinPool restartPool = shared ? executor : new ForkJoinPool(Math.min(parallelism, iterNum));
+        ExecutorCompletionService<KMeansRun> completion =
+                shared ? null : new ExecutorCompletionService<KMeansRun>(restartPool);
+        List<ForkJoinTask<KMeansRun>> tasks = new ArrayList<ForkJoinTask<KMeansRun>>(shared ? iterNum : 0);
+        try {
+            for (int i = 0; i < iterNum; i++) {
+                final int restartId = i;
+                final long seed = random.nextLong();
+                // 缓冲区在任务开始执行时才分配
+                Callable<KMeansRun> restart = new Callable<KMeansRun>() {
+                    @Override
+                    public KMeansRun call() {
+                        KMeansRun trial = new KMeansRun(KMeansRun.this, restartId, seed);
+                        trial.runOnce(1);
+                        return trial;
+                    }
+                };
+                if (shared) {
+                    tasks.add(restartPool.submit(restart));
+                } else {
+                    completion.submit(restart);
+                }
+            }
+            KMeansRun best = null;
+            long totalDistances = 0;
+            long totalSkipped = 0;
+            for (int i = 0; i < iterNum; i++) {
+                KMeansRun trial = shared ? tasks.get(i).join() : completion.take().get();
+                totalDistances += trial.distanceCount;
+                totalSkipped += trial.skippedCount;
+                if (best == null || trial.sse < best.sse
+                        || (trial.sse == best.sse && trial.restartId < best.restartId)) {
+                    if (best != null) {
+                        best.releaseResults();
+                    }
+                    best = trial;
+                } else {
+                    trial.releaseResults();
+                }
+            }
+            adopt(best);
+            distanceCount += totalDistances;
+            skippedCount += totalSkipped;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("k-means restarts interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (shared) {
+                for (ForkJoinTask<KMeansRun> task : tasks) {
+                    task.cancel(false);
+                }
+            } else {
+                restartPool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 采用另一次运行的结果，直接接管它的缓冲区，不做复制
+     */
+    private void adopt(KMeansRun other) {
+        centers = other.centers;
+        centerNorms = other.centerNorms;
+        assignment = other.assignment;
+        dist = other.dist;
+        sums = other.sums;
+        counts = other.counts;
+        sse = other.sse;
+        iterRunTimes = other.iterRunTimes;
+    }
+
+    /**
+     * 确定本次运行实际使用的算法
+     */
+    private Algorithm chooseMode() {
+        // KD 树建树时需要把数据复制到一个数组中
+        boolean kdTreeFits = (long) store.size() * len <= Integer.MAX_VALUE - 8;
+        if (algorithm == Algorithm.KDTREE && !kdTreeFits) {
+            throw new IllegalArgumentException("data set is too large for KDTREE");
+        }
+        if (algorithm == Algorithm.AUTO) {
+            return len <= KD_TREE_MAX_DIM && kdTreeFits ? Algorithm.KDTREE : Algorithm.LLOYD;
+        }
+        return algorithm;
+    }
+
+    /**
+     * 计算每个点到所属类最终中心的距离。KD 树整棵子树分配和 Hamerly 跳过计算的点在迭代中没有准确距离，
+     * 统一在结束时计算一次。
+     */
+    private void calculateDist() {
+        sse = 0;
+        for (int i = 0, n = store.size(); i < n; i++) {
+            float d = store.squaredDistance(i, centers, assignment[i] * len, centerNorms[assignment[i]]);
+            dist[i] = (float) Math.sqrt(d);
+            sse += d;
+        }
+    }
+
+    /**
+     * 根据类中心和分配结果构建 Cluster 视图，仅用于输出结果；成员 Point 在调用方访问时才生成。
+     * assignment 和 dist 在下一次运行或归还缓冲区池后会被改写，这里复制一份，返回的 Cluster 始终有效。
+     */
+    private Set<Cluster> buildClusters() {
+        MemberIndex index = new MemberIndex(store, assignment.clone(), dist.clone(), kNum);
+        Set<Cluster> clusterSet = new LinkedHashSet<Cluster>();
+        for (int c = 0; c < kNum; c++) {
+            Point center = new Point(Arrays.copyOfRange(centers, c * len, (c + 1) * len));
+            clusterSet.add(new Cluster(c, center, counts[c], index));
         }
         return clusterSet;
     }
@@ -154,4 +863,53 @@ public class KMeansRun {
     public int getIterTimes() {
         return iterRunTimes;
     }
+
+    /**
+     * 返回累计计算的距离次数
+     */
+    public long getDistanceCount() {
+        return distanceCount;
+    }
+
+    /**
+     * 返回 Hamerly 算法利用上下界累计跳过的距离次数（KD 树模式下不统计）
+     */
+    public long getSkippedDistanceCount() {
+        return skippedCount;
+    }
+
+    /**
+     * 返回误差平方和，即每个点到所属类最终中心距离的平方之和
+     */
+    public double getSSE() {
+        return sse;
+    }
+
+    /**
+     * 返回簇的个数
+     */
+    public int getK() {
+        return kNum;
+    }
+
+    /**
+     * 返回类中心，kNum*len 按行存放（只读）
+     */
+    public float[] getCenters() {
+        return centers;
+    }
+
+    /**
+     * 返回每个点所属类中心的编号（只读）
+     */
+    public int[] getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * 返回每个点到所属类最终中心的距离（只读）
+     */
+    public float[] getDist() {
+        return dist;
+    }
 }
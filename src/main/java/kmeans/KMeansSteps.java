@@ -0,0 +1,101 @@
+package kmeans;
+
+/**
+ * KMeansRun、ShardWorker 和 ShardedKMeans 共用的 k-means 基本步骤：为一个点找最近的中心、由求和更新类中心、
+ * 由求和计算 SSE。单机、多线程和分片的运行都调用这里的实现，修改一处即对所有运行方式生效。
+ */
+final class KMeansSteps {
+
+    private KMeansSteps() {
+    }
+
+    /**
+     * 一个点最近的中心，以及到最近、第二近中心距离的平方。每个线程使用自己的实例，逐点复用
+     */
+    static final class Nearest {
+        int center;                               //最近中心的编号
+        float dist;                               //到最近中心距离的平方
+        float second;                             //到第二近中心距离的平方，只有一个中心时为 Float.MAX_VALUE
+    }
+
+    /**
+     * 计算第 row 个点到 k 个中心的距离，结果写入 out；centerNorms 为每个中心模长的平方
+     */
+    static void nearest(PointStore store, int row, float[] centers, float[] centerNorms, int k, Nearest out) {
+        int len = store.dimension();
+        // 只比较距离的平方，由调用方决定是否开方
+        int best = 0;
+        float min_dis = store.squaredDistance(row, centers, 0, centerNorms[0]);
+        float second_dis = Float.MAX_VALUE;
+        for (int c = 1; c < k; c++) {
+            float tmp_dis = store.squaredDistance(row, centers, c * len, centerNorms[c]);
+            if (tmp_dis < min_dis) {
+                second_dis = min_dis;
+                min_dis = tmp_dis;
+                best = c;
+            } else if (tmp_dis < second_dis) {
+                second_dis = tmp_dis;
+            }
+        }
+        out.center = best;
+        out.dist = min_dis;
+        out.second = second_dis;
+    }
+
+    /**
+     * 用第 c 个类的求和与成员个数更新它的中心，返回中心移动距离的平方；空类保留原来的中心，返回 0。
+     * 普通 k-means 取均值；球面 k-means 取归一化后的和，与均值方向相同
+     */
+    static float updateCenter(float[] centers, double[] sums, long count, int c, int len, boolean spherical) {
+        if (count == 0) {
+            return 0;
+        }
+        int offset = c * len;
+        double scale = 1.0 / count;
+        if (spherical) {
+            double norm = 0;
+            for (int i = 0; i < len; i++) {
+                norm += sums[offset + i] * sums[offset + i];
+            }
+            scale = norm > 0 ? 1 / Math.sqrt(norm) : 0;
+        }
+        float shift = 0;
+        for (int i = 0; i < len; i++) {
+            float mean = (float) (sums[offset + i] * scale);
+            float d = mean - centers[offset + i];
+            shift += d * d;
+            centers[offset + i] = mean;
+        }
+        return shift;
+    }
+
+    /**
+     * 第 c 个类对 SSE 的贡献中与数据点模长无关的部分 n_c|μ_c|² - 2 S_c·μ_c。
+     * 加上所有点模长平方之和即为 SSE = Σ|x|² - 2Σ S_c·μ_c + Σ n_c|μ_c|²，只需 O(k*len) 而不必再遍历数据集
+     */
+    static double sseTerm(float[] centers, double[] sums, long count, int c, int len) {
+        if (count == 0) {
+            return 0;
+        }
+        double dot = 0;
+        double norm = 0;
+        for (int i = 0; i < len; i++) {
+            double v = centers[c * len + i];
+            dot += sums[c * len + i] * v;
+            norm += v * v;
+        }
+        return count * norm - 2 * dot;
+    }
+
+    /**
+     * 所有点模长平方之和
+     */
+    static double normSum(PointStore store) {
+        float[] origin = new float[store.dimension()];
+        double total = 0;
+        for (int i = 0, n = store.size(); i < n; i++) {
+            total += store.squaredDistance(i, origin, 0, 0);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,397 @@
+package kmeans;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 用于低维数据的 KD 树过滤算法（Kanungo et al. 2002）。
+ * 树在第一次使用时建立一次，每个节点记录包围盒和节点内所有点各维度之和。
+ * 分配时从根节点向下传递候选中心集合：离包围盒中点最近的候选中心记为 z*，
+ * 若包围盒内任何位置都离某个候选中心 z 比离 z* 远，则 z 从该子树的候选中删除。
+ * 只剩一个候选中心时，整棵子树一次性分给它，直接累加节点的求和，不再计算子树内每个点的距离。
+ * 树建好后不再修改，可以被多次运行同时使用；每次运行通过 newFilter 取得自己的分配缓冲区，
+ * 上层过滤之后各子树可以在 ForkJoinPool 中并行分配。
+ */
+class KdTree {
+    private static final int LEAF_SIZE = 16;      //叶子节点最多的点数
+
+    private final PointStore store;
+    private final int dim;
+    private final int[] perm;                     //按树的顺序排列的行号，每个节点对应其中连续的一段
+
+    // 节点按数组存放，节点编号即下标
+    private int nodeNum;
+    private int[] lo;                             //节点对应 perm 的起始位置
+    private int[] hi;                             //节点对应 perm 的结束位置（不含）
+    private int[] left;                           //左子节点，叶子节点为 -1
+    private int[] right;                          //右子节点
+    private float[] boxMin;                       //包围盒各维度最小值，nodeNum*dim
+    private float[] boxMax;                       //包围盒各维度最大值，nodeNum*dim
+    private double[] sum;                         //节点内所有点各维度之和，nodeNum*dim
+
+    private final int depth;                      //树的深度
+
+    KdTree(PointStore store) {
+        this.store = store;
+        this.dim = store.dimension();
+        int n = store.size();
+        this.perm = new int[n];
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+        }
+        // 建树时临时把数据按行复制一份，便于按坐标划分，建完即释放
+        float[] coords = new float[n * dim];
+        for (int i = 0; i < n; i++) {
+            store.copyRow(i, coords, i * dim);
+        }
+        // 划分后每个叶子至少有 LEAF_SIZE/2 个点，节点数不超过叶子数的两倍
+        int capacity = 2 * (n / (LEAF_SIZE / 2) + 1);
+        lo = new int[capacity];
+        hi = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        boxMin = new float[capacity * dim];
+        boxMax = new float[capacity * dim];
+        sum = new double[capacity * dim];
+        this.depth = build(coords, 0, n, 0);
+    }
+
+    /**
+     * 建立 perm[from, to) 对应的子树，返回子树的深度
+     */
+    private int build(float[] coords, int from, int to, int depthSoFar) {
+        int node = nodeNum++;
+        lo[node] = from;
+        hi[node] = to;
+        left[node] = -1;
+        right[node] = -1;
+        int b = node * dim;
+        for (int j = 0; j < dim; j++) {
+            boxMin[b + j] = Float.MAX_VALUE;
+            boxMax[b + j] = -Float.MAX_VALUE;
+        }
+        for (int i = from; i < to; i++) {
+            int p = perm[i] * dim;
+            for (int j = 0; j < dim; j++) {
+                float v = coords[p + j];
+                boxMin[b + j] = Math.min(boxMin[b + j], v);
+                boxMax[b + j] = Math.max(boxMax[b + j], v);
+                sum[b + j] += v;
+            }
+        }
+        if (to - from <= LEAF_SIZE) {
+            return depthSoFar;
+        }
+        // 沿包围盒最宽的维度在中位数处划分
+        int axis = 0;
+        for (int j = 1; j < dim; j++) {
+            if (boxMax[b + j] - boxMin[b + j] > boxMax[b + axis] - boxMin[b + axis]) {
+                axis = j;
+            }
+        }
+        if (boxMax[b + axis] == boxMin[b + axis]) {
+            // 所有点都相同，无法再划分
+            return depthSoFar;
+        }
+        int mid = (from + to) >>> 1;
+        select(coords, axis, from, to - 1, mid);
+        left[node] = nodeNum;
+        int leftDepth = build(coords, from, mid, depthSoFar + 1);
+        right[node] = nodeNum;
+        int rightDepth = build(coords, mid, to, depthSoFar + 1);
+        return Math.max(leftDepth, rightDepth);
+    }
+
+    /**
+     * 快速选择：调整 perm[from, to] 使第 k 个位置上是沿 axis 坐标第 k 小的点
+     */
+    private void select(float[] coords, int axis, int from, int to, int k) {
+        while (from < to) {
+            float pivot = coords[perm[(from + to) >>> 1] * dim + axis];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (coords[perm[i] * dim + axis] < pivot) {
+                    i++;
+                }
+                while (coords[perm[j] * dim + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = perm[i];
+                    perm[i] = perm[j];
+                    perm[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                to = j;
+            } else if (k >= i) {
+                from = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 为 k 个中心创建分配用的缓冲区，每次运行一个，不能在线程之间共享。
+     * 分配时先在树的上层顺序地过滤，到第 ⌈log2(tasks)⌉ 层为止，该层的每棵子树作为一个任务，
+     * 各自累加到自己的部分和，最后按子树的顺序合并。任务的划分只取决于 tasks，与是否并行执行无关，
+     * 因此顺序执行和并行执行得到完全相同的结果。
+     */
+    Filter newFilter(int k, int tasks) {
+        return new Filter(k, tasks);
+    }
+
+    class Filter {
+        private final int k;
+        private final int splitDepth;             //在这一层把子树拆成任务
+        private final Walker walker;              //上层过滤和顺序执行任务时使用
+        private final int[] taskNode;             //每个任务的子树根节点
+        private final int[] taskCandidateNum;     //每个任务的候选中心个数
+        private final int[][] taskCandidates;     //每个任务的候选中心，由上层过滤得到
+        private int taskNum;                      //本次分配的任务个数
+        private Walker[] walkers;                 //并行执行时每个任务一个，第一次并行时创建
+        private double[][] taskSums;              //每个任务的各维度之和，顺序执行时只用第一个
+        private int[][] taskCounts;               //每个任务的成员个数
+        private long changedCount;                //本次分配改变所属类的点数
+
+        Filter(int k, int tasks) {
+            this.k = k;
+            int levels = 32 - Integer.numberOfLeadingZeros(Math.max(1, tasks) - 1);
+            this.splitDepth = Math.min(levels, depth);
+            int maxTasks = 1 << splitDepth;
+            this.walker = new Walker(k);
+            this.taskNode = new int[maxTasks];
+            this.taskCandidateNum = new int[maxTasks];
+            this.taskCandidates = new int[maxTasks][];
+            this.taskSums = new double[1][k * dim];
+            this.taskCounts = new int[1][k];
+        }
+
+        /**
+         * 为所有点分配最近的中心，各维度之和与成员个数累加到 sums、counts，返回计算的距离次数。
+         * pool 不为 null 时各子树任务在其中并行执行
+         */
+        long assign(float[] centers, int[] assignment, double[] sums, int[] counts, ForkJoinPool pool) {
+            taskNum = 0;
+            walker.reset();
+            for (int c = 0; c < k; c++) {
+                walker.candidates[0][c] = c;
+            }
+            walker.filter(0, 0, k, centers, assignment, sums, counts, this);
+            long distanceCount = walker.distanceCount;
+            changedCount = walker.changedCount;
+            if (pool != null && taskNum > 1) {
+                if (walkers == null) {
+                    walkers = new Walker[taskNode.length];
+                    taskSums = new double[taskNode.length][];
+                    taskCounts = new int[taskNode.length][];
+                    for (int t = 0; t < walkers.length; t++) {
+                        walkers[t] = new Walker(k);
+                        taskSums[t] = new double[k * dim];
+                        taskCounts[t] = new int[k];
+                    }
+                }
+                pool.invoke(new TaskRange(0, taskNum, centers, assignment));
+                for (int t = 0; t < taskNum; t++) {
+                    merge(t, sums, counts);
+                    distanceCount += walkers[t].distanceCount;
+                    changedCount += walkers[t].changedCount;
+                }
+            } else {
+                for (int t = 0; t < taskNum; t++) {
+                    walker.reset();
+                    runTask(t, walker, taskSums[0], taskCounts[0], centers, assignment);
+                    merge(0, sums, counts);
+                    distanceCount += walker.distanceCount;
+                    changedCount += walker.changedCount;
+                }
+            }
+            return distanceCount;
+        }
+
+        /**
+         * 记录一棵需要继续过滤的子树及其候选中心
+         */
+        private void addTask(int node, int[] cand, int candidateNum) {
+            if (taskCandidates[taskNum] == null) {
+                taskCandidates[taskNum] = new int[k];
+            }
+            System.arraycopy(cand, 0, taskCandidates[taskNum], 0, candidateNum);
+            taskNode[taskNum] = node;
+            taskCandidateNum[taskNum] = candidateNum;
+            taskNum++;
+        }
+
+        private void runTask(int t, Walker w, double[] ps, int[] pc, float[] centers, int[] assignment) {
+            Arrays.fill(ps, 0);
+            Arrays.fill(pc, 0);
+            System.arraycopy(taskCandidates[t], 0, w.candidates[splitDepth], 0, taskCandidateNum[t]);
+            w.filter(taskNode[t], splitDepth, taskCandidateNum[t], centers, assignment, ps, pc, null);
+        }
+
+        private void merge(int buf, double[] sums, int[] counts) {
+            double[] ps = taskSums[buf];
+            int[] pc = taskCounts[buf];
+            for (int i = 0; i < ps.length; i++) {
+                sums[i] += ps[i];
+            }
+            for (int c = 0; c < k; c++) {
+                counts[c] += pc[c];
+            }
+        }
+
+        /**
+         * 最近一次分配改变所属类的点数
+         */
+        long getChangedCount() {
+            return changedCount;
+        }
+
+        /**
+         * 按任务编号二分拆分的并行任务，每个任务使用自己的缓冲区，子树之间的点互不重叠
+         */
+        private class TaskRange extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final int from;
+            private final int to;
+            private final float[] centers;
+            private final int[] assignment;
+
+            TaskRange(int from, int to, float[] centers, int[] assignment) {
+                this.from = from;
+                this.to = to;
+                this.centers = centers;
+                this.assignment = assignment;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from == 1) {
+                    walkers[from].reset();
+                    runTask(from, walkers[from], taskSums[from], taskCounts[from], centers, assignment);
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                invokeAll(new TaskRange(from, mid, centers, assignment), new TaskRange(mid, to, centers, assignment));
+            }
+        }
+    }
+
+    /**
+     * 从某个节点向下过滤候选中心的缓冲区和计数，每个线程一个
+     */
+    private class Walker {
+        private final int[][] candidates;         //每一层的候选中心
+        private final float[] point;              //包围盒中点、顶点等临时向量
+        private long distanceCount;               //计算的距离次数
+        private long changedCount;                //改变所属类的点数
+
+        Walker(int k) {
+            candidates = new int[depth + 1][k];
+            point = new float[dim];
+        }
+
+        void reset() {
+            distanceCount = 0;
+            changedCount = 0;
+        }
+
+        /**
+         * 过滤以 node 为根的子树，候选中心在 candidates[depth] 的前 candidateNum 个中。
+         * tasks 不为 null 时到达拆分的层就把子树记为任务，不再向下
+         */
+        void filter(int node, int depth, int candidateNum, float[] centers, int[] assignment,
+                    double[] sums, int[] counts, Filter tasks) {
+            int[] cand = candidates[depth];
+            if (tasks != null && depth == tasks.splitDepth && left[node] >= 0) {
+                tasks.addTask(node, cand, candidateNum);
+                return;
+            }
+            if (left[node] < 0) {
+                // 叶子节点：逐点在候选中心中查找最近的
+                for (int i = lo[node]; i < hi[node]; i++) {
+                    int row = perm[i];
+                    int best = cand[0];
+                    float min_dis = store.squaredDistance(row, centers, best * dim);
+                    for (int c = 1; c < candidateNum; c++) {
+                        float tmp_dis = store.squaredDistance(row, centers, cand[c] * dim);
+                        if (tmp_dis < min_dis) {
+                            min_dis = tmp_dis;
+                            best = cand[c];
+                        }
+                    }
+                    distanceCount += candidateNum;
+                    if (assignment[row] != best) {
+                        assignment[row] = best;
+                        changedCount++;
+                    }
+                    store.addTo(row, sums, best * dim);
+                    counts[best]++;
+                }
+                return;
+            }
+            int b = node * dim;
+            // 找离包围盒中点最近的候选中心 z*
+            for (int j = 0; j < dim; j++) {
+                point[j] = (boxMin[b + j] + boxMax[b + j]) / 2;
+            }
+            int star = cand[0];
+            float min_dis = DistanceCompute.squaredEuclidean(point, 0, centers, star * dim, dim);
+            for (int c = 1; c < candidateNum; c++) {
+                float tmp_dis = DistanceCompute.squaredEuclidean(point, 0, centers, cand[c] * dim, dim);
+                if (tmp_dis < min_dis) {
+                    min_dis = tmp_dis;
+                    star = cand[c];
+                }
+            }
+            distanceCount += candidateNum;
+            // 删除在整个包围盒内都比 z* 远的候选中心
+            int[] next = candidates[depth + 1];
+            int nextNum = 0;
+            for (int c = 0; c < candidateNum; c++) {
+                if (cand[c] == star || !isFarther(centers, cand[c], star, b)) {
+                    next[nextNum++] = cand[c];
+                }
+            }
+            distanceCount += 2L * (candidateNum - 1);
+            if (nextNum == 1) {
+                // 整棵子树都分给 z*
+                for (int i = lo[node]; i < hi[node]; i++) {
+                    if (assignment[perm[i]] != star) {
+                        assignment[perm[i]] = star;
+                        changedCount++;
+                    }
+                }
+                int offset = star * dim;
+                for (int j = 0; j < dim; j++) {
+                    sums[offset + j] += sum[b + j];
+                }
+                counts[star] += hi[node] - lo[node];
+                return;
+            }
+            // 左子树只会改写更深层的候选集合，右子树可以继续使用 next
+            filter(left[node], depth + 1, nextNum, centers, assignment, sums, counts, tasks);
+            filter(right[node], depth + 1, nextNum, centers, assignment, sums, counts, tasks);
+        }
+
+        /**
+         * 包围盒内所有位置是否都离中心 z 比离中心 star 远：
+         * 取包围盒在 z - star 方向上最远的顶点 v，只需比较 v 到两个中心的距离。
+         */
+        private boolean isFarther(float[] centers, int z, int star, int b) {
+            int zo = z * dim;
+            int so = star * dim;
+            for (int j = 0; j < dim; j++) {
+                point[j] = centers[zo + j] > centers[so + j] ? boxMax[b + j] : boxMin[b + j];
+            }
+            return DistanceCompute.squaredEuclidean(point, 0, centers, zo, dim)
+                    >= DistanceCompute.squaredEuclidean(point, 0, centers, so, dim);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package kmeans;
+
+/**
+ * 同一进程内的通道，直接调用工作者，不做序列化
+ */
+public class LocalShardChannel implements ShardChannel {
+
+    private final ShardWorker worker;
+
+    public LocalShardChannel(ShardWorker worker) {
+        this.worker = worker;
+    }
+
+    public LocalShardChannel(PointStore shard) {
+        this(new ShardWorker(shard));
+    }
+
+    @Override
+    public int size() {
+        return worker.size();
+    }
+
+    @Override
+    public int dimension() {
+        return worker.dimension();
+    }
+
+    @Override
+    public float[] rows(int[] rows) {
+        return worker.rows(rows);
+    }
+
+    @Override
+    public ShardResult assign(float[] centers, int k) {
+        return worker.assign(centers, k);
+    }
+
+    @Override
+    public void close() {
+    }
+}
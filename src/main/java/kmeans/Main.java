@@ -26,9 +26,11 @@ public class Main {
         dataSet.add(new float[] { 7, 8, 4});
 
         KMeansRun kRun =new KMeansRun(3, dataSet);
+        kRun.setIterNum(10);
 
         Set<Cluster> clusterSet = kRun.run();
         System.out.println("单次迭代运行次数："+kRun.getIterTimes());
+        System.out.println("误差平方和："+kRun.getSSE());
         for (Cluster cluster : clusterSet) {
             System.out.println(cluster);
         }
@@ -0,0 +1,86 @@
+package kmeans;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 内存映射的数据集，文件格式见 {@link BinaryDataset}。
+ * 数据点直接在映射区域中读取，不复制到堆内也不创建对象，由操作系统按需换入页面。
+ * 单个映射区域最大 1GB（MAX_CHUNK_BYTES），文件较大时按行切成多个区域，每个区域的行数为 2 的幂。
+ */
+public class MappedPointStore implements PointStore {
+
+    private static final long MAX_CHUNK_BYTES = 1L << 30;  //每个映射区域的最大字节数
+
+    private final int size;                                //数据点个数
+    private final int dim;                                 //数据点维度
+    private final FloatBuffer[] chunks;                    //按行连续存放的映射区域
+    private final int chunkShift;                          //每个区域行数的 log2
+    private final int chunkMask;                           //区域内行号掩码
+
+    private MappedPointStore(FileChannel channel, BinaryDataset.Header header) throws IOException {
+        if (header.rows == 0 || header.rows > Integer.MAX_VALUE) {
+            throw new IOException("unsupported number of rows: " + header.rows);
+        }
+        this.size = (int) header.rows;
+        this.dim = header.dim;
+        long rowBytes = 4L * dim;
+        int rowsPerChunk = Integer.highestOneBit((int) Math.max(1, Math.min(Integer.MAX_VALUE, MAX_CHUNK_BYTES / rowBytes)));
+        this.chunkShift = Integer.numberOfTrailingZeros(rowsPerChunk);
+        this.chunkMask = rowsPerChunk - 1;
+        int chunkNum = (int) (((long) size + rowsPerChunk - 1) >>> chunkShift);
+        this.chunks = new FloatBuffer[chunkNum];
+        for (int i = 0; i < chunkNum; i++) {
+            long firstRow = (long) i << chunkShift;
+            long rows = Math.min(rowsPerChunk, size - firstRow);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, BinaryDataset.HEADER_BYTES + firstRow * rowBytes,
+                    rows * rowBytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+    }
+
+    /**
+     * 打开并映射数据集文件。映射建立后即可关闭文件通道，映射区域在被回收前一直有效。
+     */
+    public static MappedPointStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedPointStore(channel, BinaryDataset.readHeader(channel));
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimension() {
+        return dim;
+    }
+
+    @Override
+    public float squaredDistance(int row, float[] centers, int offset) {
+        return DistanceCompute.squaredEuclidean(chunks[row >>> chunkShift], (row & chunkMask) * dim, centers, offset, dim);
+    }
+
+    @Override
+    public void addTo(int row, double[] sums, int offset) {
+        FloatBuffer a = chunks[row >>> chunkShift];
+        int p = (row & chunkMask) * dim;
+        for (int i = 0; i < dim; i++) {
+            sums[offset + i] += a.get(p + i);
+        }
+    }
+
+    @Override
+    public void copyRow(int row, float[] dst, int offset) {
+        FloatBuffer a = chunks[row >>> chunkShift];
+        int p = (row & chunkMask) * dim;
+        for (int i = 0; i < dim; i++) {
+            dst[offset + i] = a.get(p + i);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package kmeans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 由分配结果 assignment 得到每个类成员的索引，供 Cluster 按需构建成员视图。
+ * 第一次访问成员时才用计数排序一次性建立所有类的行号列表，O(n + k)，之后每个类直接取自己的片段。
+ * 不复制传入的 assignment 和 dist，调用方需保证之后不再修改它们。
+ */
+class MemberIndex {
+    private final PointStore store;
+    private final int[] assignment;
+    private final float[] dist;
+    private final int kNum;
+
+    private int[] start;                          //第 c 个类的行号从 rows[start[c]] 开始，到 rows[start[c+1]] 结束
+    private int[] rows;                           //按类排列的行号
+
+    MemberIndex(PointStore store, int[] assignment, float[] dist, int kNum) {
+        this.store = store;
+        this.assignment = assignment;
+        this.dist = dist;
+        this.kNum = kNum;
+    }
+
+    /**
+     * 第 id 个类的成员行号
+     */
+    synchronized int[] rows(int id) {
+        if (rows == null) {
+            build();
+        }
+        int[] result = new int[start[id + 1] - start[id]];
+        System.arraycopy(rows, start[id], result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * 构建第 id 个类的成员 Point 视图
+     */
+    List<Point> members(int id) {
+        int[] memberRows = rows(id);
+        List<Point> members = new ArrayList<Point>(memberRows.length);
+        int len = store.dimension();
+        for (int row : memberRows) {
+            float[] values = new float[len];
+            store.copyRow(row, values, 0);
+            Point point = new Point(row, values);
+            point.setClusterId(id);
+            point.setDist(dist[row]);
+            members.add(point);
+        }
+        return members;
+    }
+
+    private void build() {
+        start = new int[kNum + 1];
+        for (int a : assignment) {
+            start[a + 1]++;
+        }
+        for (int c = 0; c < kNum; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] next = new int[kNum];
+        System.arraycopy(start, 0, next, 0, kNum);
+        rows = new int[assignment.length];
+        for (int i = 0; i < assignment.length; i++) {
+            rows[next[assignment[i]]++] = i;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package kmeans;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Mini-batch k-means（Sculley 2010），用于放不进内存的数据集。
+ * 每次从 BatchSource 读取一批固定大小的数据点，先按当前中心为整批点分配类，
+ * 再逐点更新中心：第 c 个中心的学习率为 1/该中心累计分到的点数。
+ * 内存中只保存一批数据、类中心和每个中心的计数，与数据集大小无关。
+ */
+public class MiniBatchKMeans {
+    private int kNum;                             //簇的个数
+    private int len;                              //每个数据点的维度
+    private int batchSize;                        //每批数据点的个数
+
+    private float[] centers;                      //类中心，kNum*len，按行连续存放
+    private long[] centerCounts;                  //每个中心累计分到的点数，决定该中心的学习率
+    private boolean initialized = false;          //类中心是否已经初始化
+    private Random random = new Random();         //选取初始类中心用的随机数
+
+    private float[] batch;                        //当前批的数据
+    private int[] batchAssignment;                //当前批每个点所属的中心
+
+    private long pointCount = 0;                  //累计处理的点数
+    private long batchCount = 0;                  //累计处理的批数
+    private long elapsedNanos = 0;                //累计处理时间
+
+    public MiniBatchKMeans(int k, int dim, int batchSize) {
+        if (k <= 0 || dim <= 0) {
+            throw new IllegalArgumentException("k and dim must be the number > 0");
+        }
+        if (batchSize < k) {
+            throw new IllegalArgumentException("batchSize must not be less than k");
+        }
+        this.kNum = k;
+        this.len = dim;
+        this.batchSize = batchSize;
+        this.centers = new float[k * dim];
+        this.centerCounts = new long[k];
+        this.batch = new float[batchSize * dim];
+        this.batchAssignment = new int[batchSize];
+    }
+
+    /**
+     * 设置随机数种子
+     */
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 读完整个数据源，每读一批就更新一次中心。可以对同一数据集多次调用，相当于多轮训练。
+     */
+    public void fit(BatchSource source) throws IOException {
+        if (source.dimension() != len) {
+            throw new IllegalArgumentException("length of array must be equal!");
+        }
+        int rows;
+        while ((rows = source.nextBatch(batch, batchSize)) > 0) {
+            partialFit(batch, rows);
+        }
+    }
+
+    /**
+     * 用一批数据更新中心，data 按行连续存放 rows 个点。
+     */
+    public void partialFit(float[] data, int rows) {
+        if (rows > batchSize) {
+            throw new IllegalArgumentException("rows must not be greater than batchSize");
+        }
+        long start = System.nanoTime();
+        if (!initialized) {
+            if (rows < kNum) {
+                throw new IllegalArgumentException("first batch must contain at least k points");
+            }
+            chooseCenter(data, rows);
+            initialized = true;
+        }
+        // 先按当前中心为整批点分配类
+        for (int i = 0; i < rows; i++) {
+            batchAssignment[i] = DistanceCompute.nearest(data, i * len, centers, kNum, len);
+        }
+        // 再逐点把所属中心向该点移动，学习率随中心累计点数递减
+        for (int i = 0; i < rows; i++) {
+            int c = batchAssignment[i];
+            centerCounts[c]++;
+            float eta = 1.0f / centerCounts[c];
+            int offset = c * len;
+            int p = i * len;
+            for (int j = 0; j < len; j++) {
+                centers[offset + j] += eta * (data[p + j] - centers[offset + j]);
+            }
+        }
+        pointCount += rows;
+        batchCount++;
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * 从第一批数据中随机选取 k 个点作为初始中心
+     */
+    private void chooseCenter(float[] data, int rows) {
+        // 部分 Fisher-Yates 洗牌，保证选到的行号不重复
+        int[] rowIds = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            rowIds[i] = i;
+        }
+        for (int c = 0; c < kNum; c++) {
+            int j = c + random.nextInt(rows - c);
+            int tmp = rowIds[c];
+            rowIds[c] = rowIds[j];
+            rowIds[j] = tmp;
+            System.arraycopy(data, rowIds[c] * len, centers, c * len, len);
+        }
+    }
+
+    /**
+     * 返回类中心，kNum*len 按行存放（只读）
+     */
+    public float[] getCenters() {
+        return centers;
+    }
+
+    /**
+     * 返回每个中心累计分到的点数（只读）
+     */
+    public long[] getCenterCounts() {
+        return centerCounts;
+    }
+
+    /**
+     * 返回累计处理的点数
+     */
+    public long getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * 返回累计处理的批数
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * 返回吞吐量，每秒处理的点数
+     */
+    public double getPointsPerSecond() {
+        return elapsedNanos == 0 ? 0 : pointCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * 返回常驻内存的大致字节数：一批数据、类中心和计数，与数据集大小无关
+     */
+    public long getFootprintBytes() {
+        return 4L * batch.length + 4L * batchAssignment.length + 4L * centers.length + 8L * centerCounts.length;
+    }
+}
@@ -0,0 +1,49 @@
+package kmeans;
+
+/**
+ * 数据点存储。
+ * k-means 的分配和更新步骤只通过行号读取数据点，不再为每个数据点创建 Point 对象，
+ * 类中心统一按行连续存放在 float[] 中，第 c 个中心从 c*dimension() 开始。
+ */
+public interface PointStore {
+
+    /**
+     * 数据点个数
+     */
+    int size();
+
+    /**
+     * 每个数据点的维度
+     */
+    int dimension();
+
+    /**
+     * 所有点非零元素的总个数，稠密存储为 size()*dimension()
+     */
+    default long nonZeroCount() {
+        return (long) size() * dimension();
+    }
+
+    /**
+     * 第 row 个点到 centers[offset, offset+dimension()) 的欧式距离的平方
+     */
+    float squaredDistance(int row, float[] centers, int offset);
+
+    /**
+     * 同上，centerSquaredNorm 为该中心模长的平方，由调用方预先算好。
+     * 稠密存储用不到它；稀疏存储借助它只需遍历非零元素，不必遍历中心的所有维度。
+     */
+    default float squaredDistance(int row, float[] centers, int offset, float centerSquaredNorm) {
+        return squaredDistance(row, centers, offset);
+    }
+
+    /**
+     * 把第 row 个点的各维度累加到 sums[offset, offset+dimension())
+     */
+    void addTo(int row, double[] sums, int offset);
+
+    /**
+     * 把第 row 个点复制到 dst[offset, offset+dimension())
+     */
+    void copyRow(int row, float[] dst, int offset);
+}
@@ -0,0 +1,94 @@
+package kmeans;
+
+import java.util.Random;
+
+/**
+ * 比较 float32、float16、int8 三种存储下 k-means 的吞吐量和误差平方和。
+ * 数据为 k 个高斯簇，三种存储使用相同的种子和算法，随机选取初始中心（选中的行号只取决于种子）；
+ * 量化存储得到的类中心再在原始 float32 数据上计算 SSE，以衡量量化带来的聚类质量损失。
+ * 用法：QuantizedBenchmark [点数] [维度] [簇数] [并行度]
+ */
+public class QuantizedBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int dim = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        FlatPointStore flat = generate(n, dim, k, 42);
+        PointStore[] stores = {
+                flat,
+                QuantizedPointStore.of(flat, QuantizedPointStore.Encoding.FLOAT16),
+                QuantizedPointStore.of(flat, QuantizedPointStore.Encoding.INT8)
+        };
+        String[] names = {"float32", "float16", "int8"};
+        long[] dataBytes = {
+                (long) n * dim * 4,
+                ((QuantizedPointStore) stores[1]).getDataBytes(),
+                ((QuantizedPointStore) stores[2]).getDataBytes()
+        };
+
+        System.out.println("n=" + n + " dim=" + dim + " k=" + k + " parallelism=" + parallelism);
+        System.out.printf("%-8s %10s %8s %12s %14s %16s%n",
+                "存储", "数据(MB)", "迭代", "耗时(ms)", "点*迭代/秒", "float32 上的 SSE");
+        // 先各跑一次预热 JIT，再计时
+        for (int round = 0; round < 2; round++) {
+            for (int s = 0; s < stores.length; s++) {
+                KMeansRun run = new KMeansRun(k, stores[s]);
+                run.setSeed(7);
+                run.setAlgorithm(KMeansRun.Algorithm.LLOYD);
+                run.setSeeding(new RandomSeeding());
+                run.setParallelism(parallelism);
+                run.setIterMaxTimes(20);
+                long start = System.nanoTime();
+                run.run();
+                long elapsed = System.nanoTime() - start;
+                if (round == 0) {
+                    continue;
+                }
+                double sse = sse(flat, run.getCenters(), k);
+                System.out.printf("%-8s %10.1f %8d %12.1f %14.0f %16.6e%n",
+                        names[s], dataBytes[s] / 1048576.0, run.getIterTimes(), elapsed / 1e6,
+                        (double) n * run.getIterTimes() / (elapsed / 1e9), sse);
+            }
+        }
+    }
+
+    /**
+     * k 个高斯簇，簇中心在 [-10, 10] 内均匀分布，簇内标准差为 1
+     */
+    private static FlatPointStore generate(int n, int dim, int k, long seed) {
+        Random random = new Random(seed);
+        float[] means = new float[k * dim];
+        for (int i = 0; i < means.length; i++) {
+            means[i] = random.nextFloat() * 20 - 10;
+        }
+        FlatPointStore store = new FlatPointStore(n, dim);
+        float[] row = new float[dim];
+        for (int i = 0; i < n; i++) {
+            int c = random.nextInt(k);
+            for (int j = 0; j < dim; j++) {
+                row[j] = means[c * dim + j] + (float) random.nextGaussian();
+            }
+            store.setRow(i, row);
+        }
+        return store;
+    }
+
+    /**
+     * 在原始数据上计算每个点到最近中心距离平方之和
+     */
+    private static double sse(PointStore store, float[] centers, int k) {
+        int len = store.dimension();
+        double sse = 0;
+        for (int i = 0; i < store.size(); i++) {
+            float min = store.squaredDistance(i, centers, 0);
+            for (int c = 1; c < k; c++) {
+                min = Math.min(min, store.squaredDistance(i, centers, c * len));
+            }
+            sse += min;
+        }
+        return sse;
+    }
+}
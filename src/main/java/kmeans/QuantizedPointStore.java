@@ -0,0 +1,247 @@
+package kmeans;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 量化存储的数据集：每个数据点的各维度按 float16 或 int8 存放，内存和内存带宽分别降为 float32 的 1/2 和 1/4。
+ * 每一维有自己的 scale 和 offset，第 j 维的值解码为 offset[j] + scale[j] * code，
+ * offset 取该维取值范围的中点，scale 把取值范围映射到编码的范围（int8 为 [-127.5, 127.5]，float16 为 [-1, 1]），
+ * 因此误差只取决于每一维自身的取值范围。
+ * 距离计算和累加时边读边解码，不保存解码后的数据集；类中心仍是 float32，求和仍是 double，只有数据点本身有量化误差。
+ * 与 FlatPointStore 一样按行分块存放，行数不受单个数组 2^31 个元素的限制。
+ */
+public class QuantizedPointStore implements PointStore {
+
+    /**
+     * 量化格式
+     */
+    public enum Encoding {
+        FLOAT16,    //半精度浮点数，每维 2 字节
+        INT8        //8 位整数，每维 1 字节
+    }
+
+    private static final int MAX_CHUNK_VALUES = 1 << 26;   //每块最多存放的维度值个数
+
+    private final int size;                                //数据点个数
+    private final int dim;                                 //数据点维度
+    private final Encoding encoding;
+    private final float[] scale;                           //每一维的缩放系数
+    private final float[] offset;                          //每一维的偏移
+    private final float[] inverseScale;                    //1/scale，编码时使用
+    private final byte[][] bytes;                          //INT8 编码的数据块
+    private final short[][] halves;                        //FLOAT16 编码的数据块
+    private final int chunkShift;                          //每块行数的 log2
+    private final int chunkMask;                           //块内行号掩码
+    private final ThreadLocal<DecodedRow> decoded;         //每个线程最近解码的一行
+
+    /**
+     * 最近解码的一行。分配和 k-means++ 等步骤对同一个点连续计算到多个中心的距离，
+     * 只在第一次解码，之后直接使用 float32 的距离核心，解码开销分摊到 k 次距离计算上。
+     */
+    private static final class DecodedRow {
+        int row = -1;
+        final float[] values;
+
+        DecodedRow(int dim) {
+            values = new float[dim];
+        }
+    }
+
+    /**
+     * 分配一个 size 行、dim 维的空数据集，min、max 为每一维的取值范围，之后通过 setRow 填充，
+     * 超出范围的值按范围的边界编码。
+     */
+    public QuantizedPointStore(int size, int dim, Encoding encoding, float[] min, float[] max) {
+        if (size <= 0 || dim <= 0) {
+            throw new IllegalArgumentException("size and dim must be > 0");
+        }
+        if (encoding == null) {
+            throw new IllegalArgumentException("encoding must not be null");
+        }
+        if (min.length != dim || max.length != dim) {
+            throw new IllegalArgumentException("length of array must be equal!");
+        }
+        this.size = size;
+        this.dim = dim;
+        this.encoding = encoding;
+        this.scale = new float[dim];
+        this.offset = new float[dim];
+        this.inverseScale = new float[dim];
+        float codeRange = encoding == Encoding.INT8 ? 127.5f : 1f;
+        for (int j = 0; j < dim; j++) {
+            if (!(min[j] <= max[j])) {
+                throw new IllegalArgumentException("min must be <= max at dimension " + j);
+            }
+            offset[j] = (float) (((double) min[j] + max[j]) / 2);
+            float halfRange = (float) (((double) max[j] - min[j]) / 2);
+            // 取值范围为 0 时所有值都等于 offset，编码恒为 0，scale 取任意非零值即可
+            scale[j] = halfRange > 0 ? halfRange / codeRange : 1f;
+            inverseScale[j] = 1 / scale[j];
+        }
+        int rowsPerChunk = Integer.highestOneBit(Math.max(1, MAX_CHUNK_VALUES / dim));
+        this.chunkShift = Integer.numberOfTrailingZeros(rowsPerChunk);
+        this.chunkMask = rowsPerChunk - 1;
+        this.decoded = ThreadLocal.withInitial(() -> new DecodedRow(dim));
+        int chunkNum = (int) (((long) size + rowsPerChunk - 1) >>> chunkShift);
+        if (encoding == Encoding.INT8) {
+            this.bytes = new byte[chunkNum][];
+            this.halves = null;
+        } else {
+            this.bytes = null;
+            this.halves = new short[chunkNum][];
+        }
+        for (int i = 0; i < chunkNum; i++) {
+            int rows = Math.min(rowsPerChunk, size - (i << chunkShift));
+            if (encoding == Encoding.INT8) {
+                bytes[i] = new byte[rows * dim];
+            } else {
+                halves[i] = new short[rows * dim];
+            }
+        }
+    }
+
+    /**
+     * 把 List<float[]> 形式的数据集量化存储，先遍历一次求每一维的取值范围
+     */
+    public static QuantizedPointStore of(List<float[]> rows, Encoding encoding) {
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("program can't get real data");
+        }
+        int dim = rows.get(0).length;
+        float[] min = new float[dim];
+        float[] max = new float[dim];
+        Arrays.fill(min, Float.MAX_VALUE);
+        Arrays.fill(max, -Float.MAX_VALUE);
+        for (float[] row : rows) {
+            if (row.length != dim) {
+                throw new IllegalArgumentException("length of array must be equal!");
+            }
+            updateRange(row, min, max);
+        }
+        QuantizedPointStore store = new QuantizedPointStore(rows.size(), dim, encoding, min, max);
+        for (int i = 0, j = rows.size(); i < j; i++) {
+            store.setRow(i, rows.get(i));
+        }
+        return store;
+    }
+
+    /**
+     * 把任意数据集（如内存映射的 float32 数据集）量化存储，遍历两次，每次只用一行的临时数组
+     */
+    public static QuantizedPointStore of(PointStore source, Encoding encoding) {
+        int dim = source.dimension();
+        float[] row = new float[dim];
+        float[] min = new float[dim];
+        float[] max = new float[dim];
+        Arrays.fill(min, Float.MAX_VALUE);
+        Arrays.fill(max, -Float.MAX_VALUE);
+        for (int i = 0; i < source.size(); i++) {
+            source.copyRow(i, row, 0);
+            updateRange(row, min, max);
+        }
+        QuantizedPointStore store = new QuantizedPointStore(source.size(), dim, encoding, min, max);
+        for (int i = 0; i < source.size(); i++) {
+            source.copyRow(i, row, 0);
+            store.setRow(i, row);
+        }
+        return store;
+    }
+
+    private static void updateRange(float[] row, float[] min, float[] max) {
+        for (int j = 0; j < row.length; j++) {
+            min[j] = Math.min(min[j], row[j]);
+            max[j] = Math.max(max[j], row[j]);
+        }
+    }
+
+    /**
+     * 量化并设置第 row 个点
+     */
+    public void setRow(int row, float[] values) {
+        if (values.length != dim) {
+            throw new IllegalArgumentException("length of array must be equal!");
+        }
+        // 其他线程缓存的解码结果不会失效，所有点应在聚类开始前设置好
+        decoded.get().row = -1;
+        int p = (row & chunkMask) * dim;
+        if (encoding == Encoding.INT8) {
+            byte[] a = bytes[row >>> chunkShift];
+            for (int j = 0; j < dim; j++) {
+                int code = Math.round((values[j] - offset[j]) * inverseScale[j]);
+                a[p + j] = (byte) Math.max(-128, Math.min(127, code));
+            }
+        } else {
+            short[] a = halves[row >>> chunkShift];
+            for (int j = 0; j < dim; j++) {
+                float v = (values[j] - offset[j]) * inverseScale[j];
+                a[p + j] = Float16.fromFloat(Math.max(-1f, Math.min(1f, v)));
+            }
+        }
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * 数据点占用的字节数，不含每一维的 scale 和 offset
+     */
+    public long getDataBytes() {
+        return (long) size * dim * (encoding == Encoding.INT8 ? 1 : 2);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimension() {
+        return dim;
+    }
+
+    @Override
+    public float squaredDistance(int row, float[] centers, int offset) {
+        DecodedRow decoded = this.decoded.get();
+        if (decoded.row != row) {
+            copyRow(row, decoded.values, 0);
+            decoded.row = row;
+        }
+        return DistanceCompute.squaredEuclidean(decoded.values, 0, centers, offset, dim);
+    }
+
+    @Override
+    public void addTo(int row, double[] sums, int offset) {
+        int p = (row & chunkMask) * dim;
+        if (encoding == Encoding.INT8) {
+            byte[] a = bytes[row >>> chunkShift];
+            for (int j = 0; j < dim; j++) {
+                sums[offset + j] += this.offset[j] + scale[j] * a[p + j];
+            }
+        } else {
+            short[] a = halves[row >>> chunkShift];
+            float[] table = Float16.table();
+            for (int j = 0; j < dim; j++) {
+                sums[offset + j] += this.offset[j] + scale[j] * table[a[p + j] & 0xffff];
+            }
+        }
+    }
+
+    @Override
+    public void copyRow(int row, float[] dst, int offset) {
+        int p = (row & chunkMask) * dim;
+        if (encoding == Encoding.INT8) {
+            byte[] a = bytes[row >>> chunkShift];
+            for (int j = 0; j < dim; j++) {
+                dst[offset + j] = this.offset[j] + scale[j] * a[p + j];
+            }
+        } else {
+            short[] a = halves[row >>> chunkShift];
+            float[] table = Float16.table();
+            for (int j = 0; j < dim; j++) {
+                dst[offset + j] = this.offset[j] + scale[j] * table[a[p + j] & 0xffff];
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package kmeans;
+
+import java.util.Random;
+
+/**
+ * 随机选取不重复的点作为初始中心。
+ */
+public class RandomSeeding implements Seeding {
+
+    @Override
+    public void chooseCenters(PointStore store, int k, float[] centers, Random random) {
+        int len = store.dimension();
+        // 不同的点少于 k 个时不能无限重试，超过次数后允许重复
+        int maxTries = 100 * k;
+        for (int id = 0, tries = 0; id < k; tries++) {
+            int row = random.nextInt(store.size());
+            // 用于标记是否已经选择过该数据。
+            boolean flag = true;
+            for (int c = 0; c < id && tries < maxTries; c++) {
+                float norm = DistanceCompute.squaredNorm(centers, c * len, len);
+                if (store.squaredDistance(row, centers, c * len, norm) == 0) {
+                    flag = false;
+                    break;
+                }
+            }
+            // 如果随机选取的点没有被选中过，则作为一个类中心
+            if (flag) {
+                store.copyRow(row, centers, id * len);
+                id++;
+            }
+        }
+    }
+}
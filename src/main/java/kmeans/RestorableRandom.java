@@ -0,0 +1,60 @@
+package kmeans;
+
+import java.util.Random;
+
+/**
+ * 可以读取和恢复内部状态的随机数生成器，用于检查点。
+ * 与 java.util.Random 使用相同的线性同余公式，种子相同时 nextInt、nextLong、nextDouble 等得到相同的序列；
+ * nextGaussian 不缓存第二个值，每次调用都重新生成，因此状态只有一个 long。
+ * 不是线程安全的。
+ */
+class RestorableRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;                           //不能有初始值：父类构造方法会先调用 setSeed
+
+    RestorableRandom() {
+        super();
+    }
+
+    RestorableRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    @Override
+    public double nextGaussian() {
+        // 极坐标法，丢弃第二个值
+        double v1;
+        double v2;
+        double s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        return v1 * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+    }
+
+    long getState() {
+        return state;
+    }
+
+    void setState(long state) {
+        this.state = state & MASK;
+    }
+}
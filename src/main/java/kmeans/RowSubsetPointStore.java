@@ -0,0 +1,56 @@
+package kmeans;
+
+/**
+ * 另一个数据集中部分行的视图，第 i 行对应 base 的第 rows[from+i] 行，不复制数据。
+ * 用于二分 k-means 在一个类的成员上单独运行 2-means。
+ */
+class RowSubsetPointStore implements PointStore {
+
+    private final PointStore base;
+    private final int[] rows;
+    private final int from;
+    private final int size;
+
+    RowSubsetPointStore(PointStore base, int[] rows, int from, int to) {
+        this.base = base;
+        this.rows = rows;
+        this.from = from;
+        this.size = to - from;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimension() {
+        return base.dimension();
+    }
+
+    @Override
+    public long nonZeroCount() {
+        // 按平均每行的非零元素个数估计
+        return Math.max(1, base.nonZeroCount() / base.size() * size);
+    }
+
+    @Override
+    public float squaredDistance(int row, float[] centers, int offset) {
+        return base.squaredDistance(rows[from + row], centers, offset);
+    }
+
+    @Override
+    public float squaredDistance(int row, float[] centers, int offset, float centerSquaredNorm) {
+        return base.squaredDistance(rows[from + row], centers, offset, centerSquaredNorm);
+    }
+
+    @Override
+    public void addTo(int row, double[] sums, int offset) {
+        base.addTo(rows[from + row], sums, offset);
+    }
+
+    @Override
+    public void copyRow(int row, float[] dst, int offset) {
+        base.copyRow(rows[from + row], dst, offset);
+    }
+}
@@ -0,0 +1,15 @@
+package kmeans;
+
+import java.util.Random;
+
+/**
+ * 初始类中心的选取策略
+ */
+public interface Seeding {
+
+    /**
+     * 从 store 中选取 k 个初始中心，按行连续写入 centers。
+     * 所有随机性都来自 random，随机数种子相同时结果相同。
+     */
+    void chooseCenters(PointStore store, int k, float[] centers, Random random);
+}
@@ -0,0 +1,32 @@
+package kmeans;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 协调者与一个工作者之间的通信方式。
+ * 协调者只通过这个接口访问工作者，可以是同一进程内的直接调用，也可以是网络连接。
+ * 同一个通道上的调用由协调者串行发出。
+ */
+public interface ShardChannel extends Closeable {
+
+    /**
+     * 工作者分片内的数据点个数
+     */
+    int size() throws IOException;
+
+    /**
+     * 每个数据点的维度
+     */
+    int dimension() throws IOException;
+
+    /**
+     * 按顺序取回分片内的若干个点，返回 rows.length*dimension() 个 float
+     */
+    float[] rows(int[] rows) throws IOException;
+
+    /**
+     * 广播类中心并取回该分片的部分结果，返回的对象在下一次调用前有效
+     */
+    ShardResult assign(float[] centers, int k) throws IOException;
+}
@@ -0,0 +1,40 @@
+package kmeans;
+
+/**
+ * 一个分片在一次分配中的部分结果：每个类的各维度之和与成员个数、所有点模长平方之和以及改变所属类的点数。
+ * 协调者只需要这些数据就能算出新的类中心和 SSE，数据点本身不离开分片。
+ */
+public class ShardResult {
+    final int kNum;                               //簇的个数
+    final int len;                                //每个数据点的维度
+    final double[] sums;                          //每个类的各维度之和，kNum*len
+    final int[] counts;                           //每个类的成员个数
+    double normSum;                               //分片内所有点模长平方之和
+    long changedCount;                            //改变所属类的点数
+
+    public ShardResult(int k, int dim) {
+        if (k <= 0 || dim <= 0) {
+            throw new IllegalArgumentException("k and dim must be > 0");
+        }
+        this.kNum = k;
+        this.len = dim;
+        this.sums = new double[k * dim];
+        this.counts = new int[k];
+    }
+
+    public int getK() {
+        return kNum;
+    }
+
+    public int getDimension() {
+        return len;
+    }
+
+    public double getNormSum() {
+        return normSum;
+    }
+
+    public long getChangedCount() {
+        return changedCount;
+    }
+}
@@ -0,0 +1,177 @@
+package kmeans;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+
+/**
+ * 通过 TCP 提供一个工作者，与 {@link SocketShardChannel} 配合，让工作者运行在独立的 JVM 中。
+ * 连接按顺序逐个处理，同一时间只服务一个协调者。
+ * 协议（大端序）：每个请求以一个字节的操作码开头，
+ * INFO 返回 int32 点数、int32 维度；
+ * ROWS 发送 int32 个数和相应个数的 int32 行号，返回这些行的 float32；
+ * ASSIGN 发送 int32 k、int32 维度和 k*维度 个 float32 类中心，
+ * 返回 k*维度 个 float64 求和、k 个 int32 成员个数、float64 模长平方和、int64 改变所属类的点数；
+ * CLOSE 结束连接。出错时返回 ERROR 和一条 UTF 消息：行号越界等请求已完整读入的错误之后可以继续发送请求；
+ * 行数、k 或维度不合法、操作码未知时无法确定请求的长度，回复错误后断开连接，不影响之后的其他连接。
+ * 一次请求或回复最多 MAX_REQUEST_VALUES 个数值，超过时按不合法处理，不会按请求头中的长度分配内存。
+ * 连接被重置等 IO 错误只结束当前连接，服务继续接受之后的连接。
+ */
+public class ShardServer implements Closeable {
+
+    static final int OP_CLOSE = 0;
+    static final int OP_INFO = 1;
+    static final int OP_ROWS = 2;
+    static final int OP_ASSIGN = 3;
+    static final int STATUS_OK = 0;
+    static final int STATUS_ERROR = 1;
+    static final int MAX_REQUEST_VALUES = 1 << 26;    //一次请求的行或类中心最多包含的数值个数（float 为 256MB）
+
+    private final ShardWorker worker;
+    private final ServerSocket server;
+
+    /**
+     * 在本机 port 端口上监听，port 为 0 时由系统分配
+     */
+    public ShardServer(ShardWorker worker, int port) throws IOException {
+        this.worker = worker;
+        this.server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * 接受并处理连接，直到 close 被调用
+     */
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (server.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            try {
+                handle(socket);
+            } catch (EOFException e) {
+                // 协调者没有发送 CLOSE 就断开了连接
+            } catch (IOException e) {
+                // 连接被重置等错误只影响当前的协调者
+                System.err.println("connection from " + socket.getRemoteSocketAddress() + " failed: " + e);
+            } finally {
+                socket.close();
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        float[] centers = null;
+        while (true) {
+            int op = in.readUnsignedByte();
+            if (op == OP_CLOSE) {
+                return;
+            }
+            try {
+                switch (op) {
+                    case OP_INFO:
+                        out.writeByte(STATUS_OK);
+                        out.writeInt(worker.size());
+                        out.writeInt(worker.dimension());
+                        break;
+                    case OP_ROWS: {
+                        int num = in.readInt();
+                        if (num < 0 || num > worker.size() || (long) num * worker.dimension() > MAX_REQUEST_VALUES) {
+                            // 请求的其余部分无法跳过，回复错误后断开连接
+                            error(out, "invalid number of rows: " + num);
+                            return;
+                        }
+                        int[] rows = new int[num];
+                        for (int i = 0; i < rows.length; i++) {
+                            rows[i] = in.readInt();
+                        }
+                        float[] values = worker.rows(rows);
+                        out.writeByte(STATUS_OK);
+                        for (float v : values) {
+                            out.writeFloat(v);
+                        }
+                        break;
+                    }
+                    case OP_ASSIGN: {
+                        int k = in.readInt();
+                        int dim = in.readInt();
+                        if (k <= 0 || dim != worker.dimension() || (long) k * dim > MAX_REQUEST_VALUES) {
+                            error(out, "invalid centers: k=" + k + " dim=" + dim);
+                            return;
+                        }
+                        if (centers == null || centers.length != k * dim) {
+                            centers = new float[k * dim];
+                        }
+                        for (int i = 0; i < centers.length; i++) {
+                            centers[i] = in.readFloat();
+                        }
+                        ShardResult result = worker.assign(centers, k);
+                        out.writeByte(STATUS_OK);
+                        for (double v : result.sums) {
+                            out.writeDouble(v);
+                        }
+                        for (int count : result.counts) {
+                            out.writeInt(count);
+                        }
+                        out.writeDouble(result.normSum);
+                        out.writeLong(result.changedCount);
+                        break;
+                    }
+                    default:
+                        error(out, "unknown operation: " + op);
+                        return;
+                }
+            } catch (IllegalArgumentException e) {
+                // 请求已经完整读入，回复错误后可以继续处理下一个请求
+                error(out, String.valueOf(e.getMessage()));
+            }
+            out.flush();
+        }
+    }
+
+    private static void error(DataOutputStream out, String message) throws IOException {
+        out.writeByte(STATUS_ERROR);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    /**
+     * 用法：ShardServer 端口 分片数据集文件（格式见 BinaryDataset）
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: ShardServer port shard.bin");
+            return;
+        }
+        ShardWorker worker = new ShardWorker(MappedPointStore.open(Paths.get(args[1])));
+        try (ShardServer server = new ShardServer(worker, Integer.parseInt(args[0]))) {
+            System.out.println("分片 " + args[1] + "（" + worker.size() + " 个点）在端口 " + server.getPort() + " 上等待连接");
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package kmeans;
+
+import java.util.Arrays;
+
+/**
+ * 分片 k-means 的工作者，持有数据集的一个分片。
+ * 每次迭代收到协调者广播的类中心后，为分片内每个点分配最近的中心，只返回每个类的求和与成员个数。
+ * 分配结果保存在工作者本地，用于统计改变所属类的点数。
+ * 一个工作者同一时间只服务一个协调者，方法不是线程安全的。
+ */
+public class ShardWorker {
+
+    private final PointStore store;               //本分片的数据
+    private final int len;                        //每个数据点的维度
+    private final int[] assignment;               //每个点所属的类，-1 表示尚未分配
+    private double normSum = -1;                  //所有点模长平方之和，第一次分配时计算
+    private ShardResult result;                   //复用的部分结果
+    private float[] centerNorms;                  //每个类中心模长的平方
+    private final KMeansSteps.Nearest nearest = new KMeansSteps.Nearest();//逐点复用的最近中心
+
+    public ShardWorker(PointStore store) {
+        if (store == null || store.size() == 0) {
+            throw new IllegalArgumentException("program can't get real data");
+        }
+        this.store = store;
+        this.len = store.dimension();
+        this.assignment = new int[store.size()];
+        Arrays.fill(assignment, -1);
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public int dimension() {
+        return len;
+    }
+
+    /**
+     * 按顺序复制分片内的若干个点，用于选取初始中心
+     */
+    public float[] rows(int[] rows) {
+        for (int row : rows) {
+            if (row < 0 || row >= store.size()) {
+                throw new IllegalArgumentException("row " + row + " out of range [0, " + store.size() + ")");
+            }
+        }
+        float[] values = new float[rows.length * len];
+        for (int i = 0; i < rows.length; i++) {
+            store.copyRow(rows[i], values, i * len);
+        }
+        return values;
+    }
+
+    /**
+     * 以 centers 为类中心分配分片内所有点，返回的结果对象在下一次调用时被覆盖
+     */
+    public ShardResult assign(float[] centers, int k) {
+        if (k <= 0 || centers.length != k * len) {
+            throw new IllegalArgumentException("length of centers must be k * dim");
+        }
+        if (result == null || result.kNum != k) {
+            result = new ShardResult(k, len);
+            centerNorms = new float[k];
+        }
+        if (normSum < 0) {
+            normSum = KMeansSteps.normSum(store);
+        }
+        for (int c = 0; c < k; c++) {
+            centerNorms[c] = DistanceCompute.squaredNorm(centers, c * len, len);
+        }
+        double[] sums = result.sums;
+        int[] counts = result.counts;
+        Arrays.fill(sums, 0);
+        Arrays.fill(counts, 0);
+        long changed = 0;
+        for (int i = 0, n = store.size(); i < n; i++) {
+            KMeansSteps.nearest(store, i, centers, centerNorms, k, nearest);
+            int best = nearest.center;
+            if (assignment[i] != best) {
+                assignment[i] = best;
+                changed++;
+            }
+            store.addTo(i, sums, best * len);
+            counts[best]++;
+        }
+        result.normSum = normSum;
+        result.changedCount = changed;
+        return result;
+    }
+
+    /**
+     * 最近一次分配中每个点所属的类
+     */
+    public int[] getAssignment() {
+        return assignment;
+    }
+}
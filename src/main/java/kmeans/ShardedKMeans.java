@@ -0,0 +1,249 @@
+package kmeans;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 分片 k-means 的协调者。数据集分成若干分片，每个分片由一个工作者持有（可以在其他 JVM 中），
+ * 协调者只通过 {@link ShardChannel} 与工作者通信，自己不保存任何数据点。
+ * 每次迭代把类中心同时广播给所有工作者，工作者返回每个类的求和与成员个数，
+ * 协调者按分片顺序合并后计算新的类中心，因此结果与各工作者返回的先后无关。
+ * 初始中心在所有分片的全部点中随机选取 k 个不同的行。
+ */
+public class ShardedKMeans {
+
+    private final int kNum;                       //簇的个数
+    private final List<ShardChannel> shards;      //与各工作者的通道
+    private int iterMaxTimes = 100000;            //单次运行最多迭代次数
+    private float disDiff = (float) 0.01;         //单次迭代终止条件，两次运行中类中心的距离差
+    private Random random = new Random();
+    private float[] initialCenters;               //指定的初始中心，为 null 时随机选取
+
+    private int len;                              //每个数据点的维度
+    private long size;                            //所有分片的点数之和
+    private float[] centers;                      //类中心，kNum*len
+    private double[] sums;                        //合并后每个类的各维度之和
+    private long[] counts;                        //合并后每个类的成员个数
+    private double normSum;                       //所有点模长平方之和
+    private int iterRunTimes = 0;                 //实际迭代次数
+    private double sse;                           //误差平方和
+
+    public ShardedKMeans(int k, List<? extends ShardChannel> shards) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be > 0");
+        }
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        this.kNum = k;
+        this.shards = new ArrayList<ShardChannel>(shards);
+    }
+
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public void setIterMaxTimes(int iterMaxTimes) {
+        if (iterMaxTimes <= 0) {
+            throw new IllegalArgumentException("iterMaxTimes must be > 0");
+        }
+        this.iterMaxTimes = iterMaxTimes;
+    }
+
+    /**
+     * 指定初始中心，k*维度 个 float，按行连续存放
+     */
+    public void setInitialCenters(float[] centers) {
+        this.initialCenters = centers == null ? null : centers.clone();
+    }
+
+    /**
+     * 运行分片 k-means，返回最终的类中心
+     */
+    public float[] run() throws IOException {
+        len = shards.get(0).dimension();
+        size = 0;
+        for (ShardChannel shard : shards) {
+            if (shard.dimension() != len) {
+                throw new IllegalArgumentException("all shards must have the same dimension");
+            }
+            size += shard.size();
+        }
+        if (initialCenters != null) {
+            if (initialCenters.length != kNum * len) {
+                throw new IllegalArgumentException("length of centers must be k * dim");
+            }
+            centers = initialCenters.clone();
+        } else {
+            centers = chooseCenters();
+        }
+        sums = new double[kNum * len];
+        counts = new long[kNum];
+        iterRunTimes = 0;
+
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        try {
+            List<Callable<ShardResult>> calls = new ArrayList<Callable<ShardResult>>(shards.size());
+            for (final ShardChannel shard : shards) {
+                calls.add(new Callable<ShardResult>() {
+                    @Override
+                    public ShardResult call() throws IOException {
+                        return shard.assign(centers, kNum);
+                    }
+                });
+            }
+            boolean ifNeedIter = true;
+            while (ifNeedIter && iterRunTimes < iterMaxTimes) {
+                merge(executor.invokeAll(calls));
+                ifNeedIter = calculateCenter();
+                iterRunTimes++;
+            }
+            sse = calculateSSE();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } finally {
+            executor.shutdown();
+        }
+        return centers.clone();
+    }
+
+    /**
+     * 在全部点中随机选取 k 个不同的行号，再向所在分片取回这些点
+     */
+    private float[] chooseCenters() throws IOException {
+        if (size < kNum) {
+            throw new IllegalArgumentException("k must not exceed the number of points");
+        }
+        Set<Long> chosen = new HashSet<Long>();
+        long[] picks = new long[kNum];
+        for (int id = 0; id < kNum; ) {
+            long row = (long) (random.nextDouble() * size);
+            if (chosen.add(row)) {
+                picks[id++] = row;
+            }
+        }
+        float[] result = new float[kNum * len];
+        long first = 0;
+        for (ShardChannel shard : shards) {
+            int shardSize = shard.size();
+            int[] rows = new int[kNum];
+            int[] ids = new int[kNum];
+            int num = 0;
+            for (int id = 0; id < kNum; id++) {
+                if (picks[id] >= first && picks[id] < first + shardSize) {
+                    rows[num] = (int) (picks[id] - first);
+                    ids[num++] = id;
+                }
+            }
+            if (num > 0) {
+                float[] values = shard.rows(Arrays.copyOf(rows, num));
+                for (int i = 0; i < num; i++) {
+                    System.arraycopy(values, i * len, result, ids[i] * len, len);
+                }
+            }
+            first += shardSize;
+        }
+        return result;
+    }
+
+    /**
+     * 按分片顺序合并各工作者的部分结果
+     */
+    private void merge(List<Future<ShardResult>> futures) throws IOException, InterruptedException {
+        Arrays.fill(sums, 0);
+        Arrays.fill(counts, 0);
+        normSum = 0;
+        for (Future<ShardResult> future : futures) {
+            ShardResult part;
+            try {
+                part = future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += part.sums[i];
+            }
+            for (int c = 0; c < kNum; c++) {
+                counts[c] += part.counts[c];
+            }
+            normSum += part.normSum;
+        }
+    }
+
+    /**
+     * 由合并后的求和计算新的类中心，空类保留原来的中心，返回是否需要继续迭代
+     */
+    private boolean calculateCenter() {
+        boolean ifNeedIter = false;
+        float limit = disDiff * disDiff;
+        for (int c = 0; c < kNum; c++) {
+            float shift = KMeansSteps.updateCenter(centers, sums, counts[c], c, len, false);
+            if (shift > limit) {
+                ifNeedIter = true;
+            }
+        }
+        return ifNeedIter;
+    }
+
+    /**
+     * 最后一次分配下各点到更新后类中心距离的平方之和，由合并后的求和得到，不需要再遍历分片（见 KMeansSteps.sseTerm）
+     */
+    private double calculateSSE() {
+        double total = normSum;
+        for (int c = 0; c < kNum; c++) {
+            total += KMeansSteps.sseTerm(centers, sums, counts[c], c, len);
+        }
+        return Math.max(0, total);
+    }
+
+    public int getIterTimes() {
+        return iterRunTimes;
+    }
+
+    public double getSSE() {
+        return sse;
+    }
+
+    public int getK() {
+        return kNum;
+    }
+
+    /**
+     * 所有分片的点数之和
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 返回类中心的副本，kNum*len，按行连续存放
+     */
+    public float[] getCenters() {
+        return centers.clone();
+    }
+
+    /**
+     * 由最终类中心生成模型
+     */
+    public KMeansModel toModel() {
+        return new KMeansModel(centers, kNum, len);
+    }
+}
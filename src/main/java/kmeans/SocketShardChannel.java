@@ -0,0 +1,112 @@
+package kmeans;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * 通过 TCP 连接 {@link ShardServer} 的通道，协议见 ShardServer
+ */
+public class SocketShardChannel implements ShardChannel {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private int size = -1;                        //工作者的点数，第一次查询后缓存
+    private int dim;                              //工作者的数据维度
+    private ShardResult result;                   //复用的部分结果
+
+    public SocketShardChannel(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    @Override
+    public int size() throws IOException {
+        info();
+        return size;
+    }
+
+    @Override
+    public int dimension() throws IOException {
+        info();
+        return dim;
+    }
+
+    private void info() throws IOException {
+        if (size >= 0) {
+            return;
+        }
+        out.writeByte(ShardServer.OP_INFO);
+        out.flush();
+        checkStatus();
+        size = in.readInt();
+        dim = in.readInt();
+    }
+
+    @Override
+    public float[] rows(int[] rows) throws IOException {
+        info();
+        out.writeByte(ShardServer.OP_ROWS);
+        out.writeInt(rows.length);
+        for (int row : rows) {
+            out.writeInt(row);
+        }
+        out.flush();
+        checkStatus();
+        float[] values = new float[rows.length * dim];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+
+    @Override
+    public ShardResult assign(float[] centers, int k) throws IOException {
+        info();
+        if (k <= 0 || centers.length != k * dim) {
+            throw new IllegalArgumentException("length of centers must be k * dim");
+        }
+        out.writeByte(ShardServer.OP_ASSIGN);
+        out.writeInt(k);
+        out.writeInt(dim);
+        for (float v : centers) {
+            out.writeFloat(v);
+        }
+        out.flush();
+        checkStatus();
+        if (result == null || result.kNum != k) {
+            result = new ShardResult(k, dim);
+        }
+        for (int i = 0; i < result.sums.length; i++) {
+            result.sums[i] = in.readDouble();
+        }
+        for (int c = 0; c < k; c++) {
+            result.counts[c] = in.readInt();
+        }
+        result.normSum = in.readDouble();
+        result.changedCount = in.readLong();
+        return result;
+    }
+
+    private void checkStatus() throws IOException {
+        if (in.readUnsignedByte() != ShardServer.STATUS_OK) {
+            throw new IOException("shard worker error: " + in.readUTF());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.writeByte(ShardServer.OP_CLOSE);
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package kmeans;
+
+import java.util.Arrays;
+
+/**
+ * 稀疏数据集，适合维度很高而每个点只有少量非零元素的数据（如文本特征）。
+ * 所有点按 CSR 格式存放：第 row 个点的非零元素位于 indices/values 的 [rowStart[row], rowStart[row+1]) 区间，
+ * 另外预先保存每个点模长的平方。类中心仍是稠密的 float[]，
+ * 距离按 |x|² - 2x·c + |c|² 计算，|c|² 由调用方预先算好，因此计算量只与非零元素个数有关，与维度无关。
+ */
+public class SparsePointStore implements PointStore {
+
+    private final int size;                       //数据点个数
+    private final int dim;                        //数据点维度
+    private final int[] rowStart;                 //每个点的非零元素起始位置，长度 size+1
+    private final int[] indices;                  //非零元素所在的维度
+    private final float[] values;                 //非零元素的值
+    private final float[] rowNorms;               //每个点模长的平方
+
+    private SparsePointStore(int size, int dim, int[] rowStart, int[] indices, float[] values) {
+        this.size = size;
+        this.dim = dim;
+        this.rowStart = rowStart;
+        this.indices = indices;
+        this.values = values;
+        this.rowNorms = new float[size];
+        for (int row = 0; row < size; row++) {
+            float norm = 0;
+            for (int p = rowStart[row]; p < rowStart[row + 1]; p++) {
+                norm += values[p] * values[p];
+            }
+            rowNorms[row] = norm;
+        }
+    }
+
+    /**
+     * 逐个添加稀疏点，最后生成数据集
+     */
+    public static class Builder {
+        private final int dim;
+        private int size = 0;
+        private int nnz = 0;
+        private int[] rowStart = new int[16];
+        private int[] indices = new int[64];
+        private float[] values = new float[64];
+
+        public Builder(int dim) {
+            if (dim <= 0) {
+                throw new IllegalArgumentException("dim must be > 0");
+            }
+            this.dim = dim;
+        }
+
+        /**
+         * 添加一个点，index 为非零元素所在的维度（不要求有序、不允许重复），value 为对应的值
+         */
+        public Builder addRow(int[] index, float[] value) {
+            if (index.length != value.length) {
+                throw new IllegalArgumentException("length of array must be equal!");
+            }
+            checkDistinct(index);
+            if (size + 2 > rowStart.length) {
+                rowStart = Arrays.copyOf(rowStart, rowStart.length * 2);
+            }
+            while (nnz + index.length > indices.length) {
+                indices = Arrays.copyOf(indices, indices.length * 2);
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            for (int i = 0; i < index.length; i++) {
+                if (index[i] < 0 || index[i] >= dim) {
+                    throw new IllegalArgumentException("index " + index[i] + " out of dimension " + dim);
+                }
+                indices[nnz] = index[i];
+                values[nnz] = value[i];
+                nnz++;
+            }
+            size++;
+            rowStart[size] = nnz;
+            return this;
+        }
+
+        /**
+         * 检查一个点的维度没有重复，重复的维度会在点积和模长中被计算两次。
+         * 严格递增时一次遍历即可，否则排序一份副本后比较相邻元素
+         */
+        private static void checkDistinct(int[] index) {
+            int i = 1;
+            while (i < index.length && index[i - 1] < index[i]) {
+                i++;
+            }
+            if (i >= index.length) {
+                return;
+            }
+            int[] sorted = index.clone();
+            Arrays.sort(sorted);
+            for (i = 1; i < sorted.length; i++) {
+                if (sorted[i] == sorted[i - 1]) {
+                    throw new IllegalArgumentException("duplicate index " + sorted[i] + " in row");
+                }
+            }
+        }
+
+        public SparsePointStore build() {
+            return build(false);
+        }
+
+        /**
+         * 生成数据集，normalize 为 true 时把每个点归一化为单位长度，用于球面 k-means
+         */
+        public SparsePointStore build(boolean normalize) {
+            if (size == 0) {
+                throw new IllegalArgumentException("program can't get real data");
+            }
+            float[] v = Arrays.copyOf(values, nnz);
+            if (normalize) {
+                for (int row = 0; row < size; row++) {
+                    double norm = 0;
+                    for (int p = rowStart[row]; p < rowStart[row + 1]; p++) {
+                        norm += v[p] * v[p];
+                    }
+                    if (norm > 0) {
+                        float scale = (float) (1 / Math.sqrt(norm));
+                        for (int p = rowStart[row]; p < rowStart[row + 1]; p++) {
+                            v[p] *= scale;
+                        }
+                    }
+                }
+            }
+            return new SparsePointStore(size, dim, Arrays.copyOf(rowStart, size + 1), Arrays.copyOf(indices, nnz), v);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int dimension() {
+        return dim;
+    }
+
+    @Override
+    public long nonZeroCount() {
+        return indices.length;
+    }
+
+    /**
+     * 第 row 个点的非零元素个数
+     */
+    public int nonZeros(int row) {
+        return rowStart[row + 1] - rowStart[row];
+    }
+
+    @Override
+    public float squaredDistance(int row, float[] centers, int offset) {
+        return squaredDistance(row, centers, offset, DistanceCompute.squaredNorm(centers, offset, dim));
+    }
+
+    @Override
+    public float squaredDistance(int row, float[] centers, int offset, float centerSquaredNorm) {
+        float dot = 0;
+        for (int p = rowStart[row], end = rowStart[row + 1]; p < end; p++) {
+            dot += values[p] * centers[offset + indices[p]];
+        }
+        // 展开式有舍入误差，可能得到很小的负数
+        return Math.max(0, rowNorms[row] - 2 * dot + centerSquaredNorm);
+    }
+
+    @Override
+    public void addTo(int row, double[] sums, int offset) {
+        for (int p = rowStart[row], end = rowStart[row + 1]; p < end; p++) {
+            sums[offset + indices[p]] += values[p];
+        }
+    }
+
+    @Override
+    public void copyRow(int row, float[] dst, int offset) {
+        Arrays.fill(dst, offset, offset + dim, 0);
+        for (int p = rowStart[row], end = rowStart[row + 1]; p < end; p++) {
+            dst[offset + indices[p]] = values[p];
+        }
+    }
+}